@@ -0,0 +1,66 @@
+package com.gaubong.teddybearshop.config;
+
+import com.theokanning.openai.client.OpenAiApi;
+import com.theokanning.openai.service.OpenAiService;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import retrofit2.Retrofit;
+import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class OpenAiConfig {
+
+    @Value("${openai.api-key}")
+    private String apiKey;
+
+    // Point at a local stub (e.g. http://localhost:8089/) to run without the real API
+    @Value("${openai.base-url:https://api.openai.com/}")
+    private String baseUrl;
+
+    @Value("${openai.timeout-seconds:30}")
+    private long timeoutSeconds;
+
+    @Value("${openai.http.max-idle-connections:20}")
+    private int maxIdleConnections;
+
+    @Value("${openai.http.max-requests:64}")
+    private int maxRequests;
+
+    /**
+     * One client for the whole application: a shared connection pool keeps
+     * TLS connections to the API warm instead of opening new ones per message.
+     */
+    @Bean(destroyMethod = "shutdownExecutor")
+    public OpenAiService openAiService() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequests);
+
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(chain -> chain.proceed(chain.request().newBuilder()
+                        .header("Authorization", "Bearer " + apiKey)
+                        .build()))
+                .connectionPool(new ConnectionPool(maxIdleConnections, 5, TimeUnit.MINUTES))
+                .dispatcher(dispatcher)
+                .connectTimeout(Duration.ofSeconds(5))
+                .readTimeout(Duration.ofSeconds(timeoutSeconds))
+                .build();
+
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(baseUrl.endsWith("/") ? baseUrl : baseUrl + "/")
+                .client(client)
+                .addConverterFactory(JacksonConverterFactory.create(OpenAiService.defaultObjectMapper()))
+                .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
+                .build();
+
+        return new OpenAiService(retrofit.create(OpenAiApi.class), client.dispatcher().executorService());
+    }
+}
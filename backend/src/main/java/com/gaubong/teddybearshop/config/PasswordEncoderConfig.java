@@ -0,0 +1,30 @@
+package com.gaubong.teddybearshop.config;
+
+import com.gaubong.teddybearshop.security.CalibratedBCryptPasswordEncoder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+@Configuration
+public class PasswordEncoderConfig {
+
+    // Fixed BCrypt cost; 0 means pick it at startup from the target hash time
+    @Value("${app.security.bcrypt.cost:0}")
+    private int cost;
+
+    @Value("${app.security.bcrypt.target-millis:250}")
+    private long targetMillis;
+
+    @Value("${app.security.bcrypt.min-cost:10}")
+    private int minCost;
+
+    @Value("${app.security.bcrypt.max-cost:14}")
+    private int maxCost;
+
+    @Bean
+    public PasswordEncoder passwordEncoder() {
+        int strength = cost > 0 ? cost : CalibratedBCryptPasswordEncoder.calibrate(targetMillis, minCost, maxCost);
+        return new CalibratedBCryptPasswordEncoder(strength);
+    }
+}
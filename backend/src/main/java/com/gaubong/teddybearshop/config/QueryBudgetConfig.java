@@ -0,0 +1,35 @@
+package com.gaubong.teddybearshop.config;
+
+import com.gaubong.teddybearshop.diagnostics.QueryCountingDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Per-request query counting, see QueryBudgetFilter. Configured under
+ * app.query-budget.* (enabled, default-statements, enforce).
+ */
+@Configuration
+public class QueryBudgetConfig {
+
+    /**
+     * Counts at the DataSource rather than in Hibernate, so JdbcTemplate writes
+     * (stock updates, order items, chat messages) are counted too.
+     */
+    @Bean
+    public static BeanPostProcessor queryCountingDataSourcePostProcessor(
+            @Value("${app.query-budget.enabled:true}") boolean enabled) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (enabled && bean instanceof DataSource && !(bean instanceof QueryCountingDataSource)) {
+                    return new QueryCountingDataSource((DataSource) bean);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,61 @@
+package com.gaubong.teddybearshop.config;
+
+import com.gaubong.teddybearshop.resilience.Bulkhead;
+import com.gaubong.teddybearshop.resilience.CircuitBreaker;
+import com.gaubong.teddybearshop.resilience.OutboundGuard;
+import com.theokanning.openai.OpenAiHttpException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.io.IOException;
+import java.util.function.Predicate;
+
+/**
+ * One OutboundGuard per upstream, configured under resilience.<name>.*
+ * (max-concurrent, max-wait-ms, window-size, minimum-calls,
+ * failure-rate-threshold, open-seconds, half-open-calls, slow-call-ms).
+ */
+@Configuration
+public class ResilienceConfig {
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Bean
+    public OutboundGuard openAiGuard() {
+        // Our own bad requests (4xx) say nothing about OpenAI's health; rate limiting (429) does
+        return guard("openai", 16, 30_000, error -> !(error instanceof OpenAiHttpException)
+                || ((OpenAiHttpException) error).statusCode >= 500
+                || ((OpenAiHttpException) error).statusCode == 429);
+    }
+
+    @Bean
+    public OutboundGuard googleGuard() {
+        // Only transport errors (timeouts, refused connections, non-2xx certificate fetches) say
+        // anything about Google; ID tokens are parsed before the guard and a bad signature is a result
+        return guard("google", 8, 5_000, error -> error instanceof IOException);
+    }
+
+    private OutboundGuard guard(String name, int defaultConcurrent, long defaultSlowCallMillis,
+                                Predicate<Throwable> isFailure) {
+        String prefix = "resilience." + name + ".";
+        Bulkhead bulkhead = new Bulkhead(
+                environment.getProperty(prefix + "max-concurrent", Integer.class, defaultConcurrent),
+                environment.getProperty(prefix + "max-wait-ms", Long.class, 100L));
+        CircuitBreaker circuitBreaker = new CircuitBreaker(
+                environment.getProperty(prefix + "window-size", Integer.class, 20),
+                environment.getProperty(prefix + "minimum-calls", Integer.class, 10),
+                environment.getProperty(prefix + "failure-rate-threshold", Double.class, 0.5),
+                environment.getProperty(prefix + "open-seconds", Long.class, 30L) * 1000,
+                environment.getProperty(prefix + "half-open-calls", Integer.class, 3));
+        return new OutboundGuard(name, bulkhead, circuitBreaker,
+                environment.getProperty(prefix + "slow-call-ms", Long.class, defaultSlowCallMillis),
+                isFailure, meterRegistry);
+    }
+}
@@ -5,7 +5,9 @@ import com.gaubong.teddybearshop.dto.JwtResponse;
 import com.gaubong.teddybearshop.dto.LoginRequest;
 import com.gaubong.teddybearshop.dto.SignupRequest;
 import com.gaubong.teddybearshop.entity.User;
+import com.gaubong.teddybearshop.resilience.DependencyUnavailableException;
 import com.gaubong.teddybearshop.security.JwtUtils;
+import com.gaubong.teddybearshop.security.LoginExecutor;
 import com.gaubong.teddybearshop.service.GoogleOAuthService;
 import com.gaubong.teddybearshop.service.UserService;
 import jakarta.validation.Valid;
@@ -16,11 +18,13 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -42,14 +46,31 @@ public class AuthController {
     @Autowired
     JwtUtils jwtUtils;
 
-    @PostMapping("/signin")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+    @Autowired
+    LoginExecutor loginExecutor;
 
+    // BCrypt runs on the bounded login pool; the request thread is released meanwhile
+    @PostMapping("/signin")
+    public CompletableFuture<ResponseEntity<?>> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+        CompletableFuture<Authentication> login;
         try {
-            Authentication authentication = authenticationManager.authenticate(
-                    new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword()));
+            login = loginExecutor.submit(() -> authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword())));
+        } catch (RejectedExecutionException e) {
+            logger.warn("POST /signin - Login queue full, rejected user: {}", loginRequest.getUsername());
+            return CompletableFuture.completedFuture(ResponseEntity.status(429)
+                    .header("Retry-After", "1")
+                    .body("Error: Too many login attempts, please try again shortly"));
+        }
+
+        return login.handle((authentication, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                logger.error("POST /signin - Login failed for user: {} - {}", loginRequest.getUsername(), cause.getMessage());
+                return ResponseEntity.badRequest()
+                        .body("Error: Invalid username or password!");
+            }
 
-            SecurityContextHolder.getContext().setAuthentication(authentication);
             String jwt = jwtUtils.generateJwtToken((UserDetails) authentication.getPrincipal());
 
             User userPrincipal = (User) authentication.getPrincipal();
@@ -65,11 +86,7 @@ public class AuthController {
                     userPrincipal.getEmail(),
                     userPrincipal.getFullName(),
                     roles));
-        } catch (Exception e) {
-            logger.error("POST /signin - Login failed for user: {} - {}", loginRequest.getUsername(), e.getMessage());
-            return ResponseEntity.badRequest()
-                    .body("Error: Invalid username or password!");
-        }
+        });
     }
 
     @PostMapping("/signup")
@@ -132,6 +149,11 @@ public class AuthController {
                     user.getEmail(),
                     user.getFullName(),
                     roles));
+        } catch (DependencyUnavailableException e) {
+            logger.warn("POST /auth/google - Google unavailable: {}", e.getMessage());
+            return ResponseEntity.status(503)
+                    .header("Retry-After", String.valueOf(e.getRetryAfterSeconds()))
+                    .body("Error: Google sign-in is temporarily unavailable, please try again shortly");
         } catch (Exception e) {
             logger.error("POST /auth/google - Google OAuth failed: {}", e.getMessage());
             return ResponseEntity.badRequest()
@@ -1,16 +1,16 @@
 package com.gaubong.teddybearshop.controller;
 
+import com.gaubong.teddybearshop.diagnostics.QueryBudget;
+import com.gaubong.teddybearshop.dto.CartView;
 import com.gaubong.teddybearshop.entity.Cart;
 import com.gaubong.teddybearshop.entity.CartItem;
 import com.gaubong.teddybearshop.entity.User;
-import com.gaubong.teddybearshop.security.JwtUtils;
+import com.gaubong.teddybearshop.security.CurrentUser;
 import com.gaubong.teddybearshop.service.CartService;
-import com.gaubong.teddybearshop.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import jakarta.servlet.http.HttpServletRequest;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -23,12 +23,6 @@ public class CartController {
     @Autowired
     private CartService cartService;
 
-    @Autowired
-    private UserService userService;
-
-    @Autowired
-    private JwtUtils jwtUtil;
-
     // DTO classes
     public static class AddToCartRequest {
         private Long productId;
@@ -54,23 +48,15 @@ public class CartController {
 
     // Lấy cart hiện tại (yêu cầu đăng nhập)
     @GetMapping
-    public ResponseEntity<?> getCart(HttpServletRequest request) {
+    @QueryBudget(statements = 4)
+    public ResponseEntity<?> getCart(@CurrentUser User currentUser) {
         try {
-            String token = getTokenFromRequest(request);
-            
-            if (token == null || !jwtUtil.validateJwtToken(token)) {
+            if (currentUser == null) {
                 // Trả về empty cart nếu chưa đăng nhập
                 return ResponseEntity.ok(createEmptyCartResponse());
             }
             
-            String username = jwtUtil.getUserNameFromJwtToken(token);
-            Optional<User> userOpt = userService.getUserByUsername(username);
-            
-            if (!userOpt.isPresent()) {
-                return ResponseEntity.ok(createEmptyCartResponse());
-            }
-            
-            Cart cart = cartService.getOrCreateCartForUser(userOpt.get());
+            CartView cart = cartService.toView(cartService.getOrCreateCartForUser(currentUser));
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -89,31 +75,17 @@ public class CartController {
 
     // Thêm sản phẩm vào cart (yêu cầu đăng nhập)
     @PostMapping("/add")
-    public ResponseEntity<?> addToCart(@RequestBody AddToCartRequest request, HttpServletRequest httpRequest) {
+    public ResponseEntity<?> addToCart(@RequestBody AddToCartRequest request, @CurrentUser User currentUser) {
         try {
-            // Lấy token từ request
-            String token = getTokenFromRequest(httpRequest);
-            
-            if (token == null || !jwtUtil.validateJwtToken(token)) {
+            if (currentUser == null) {
                 Map<String, Object> response = new HashMap<>();
                 response.put("success", false);
                 response.put("message", "Vui lòng đăng nhập để thêm sản phẩm vào giỏ hàng");
                 return ResponseEntity.status(401).body(response);
             }
             
-            // Lấy user từ token
-            String username = jwtUtil.getUserNameFromJwtToken(token);
-            Optional<User> userOpt = userService.getUserByUsername(username);
-            
-            if (!userOpt.isPresent()) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", false);
-                response.put("message", "Người dùng không tồn tại");
-                return ResponseEntity.status(404).body(response);
-            }
-            
             // Lấy hoặc tạo cart cho user
-            Cart cart = cartService.getOrCreateCartForUser(userOpt.get());
+            Cart cart = cartService.getOrCreateCartForUser(currentUser);
             
             // Thêm sản phẩm vào cart
             CartItem cartItem = cartService.addToCart(cart, request.getProductId(), request.getQuantity());
@@ -121,10 +93,11 @@ public class CartController {
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "Đã thêm sản phẩm vào giỏ hàng");
-            response.put("cart", cart);
-            response.put("cartItem", cartItem);
-            response.put("totalItems", cart.getTotalItems());
-            response.put("totalPrice", cart.getTotalPrice());
+            CartView cartView = cartService.toView(cart);
+            response.put("cart", cartView);
+            response.put("cartItem", cartService.toItemView(cartItem));
+            response.put("totalItems", cartView.getTotalItems());
+            response.put("totalPrice", cartView.getTotalPrice());
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -137,37 +110,26 @@ public class CartController {
 
     // Cập nhật quantity (yêu cầu đăng nhập)
     @PutMapping("/update")
-    public ResponseEntity<?> updateQuantity(@RequestBody UpdateQuantityRequest request, HttpServletRequest httpRequest) {
+    public ResponseEntity<?> updateQuantity(@RequestBody UpdateQuantityRequest request, @CurrentUser User currentUser) {
         try {
-            String token = getTokenFromRequest(httpRequest);
-            
-            if (token == null || !jwtUtil.validateJwtToken(token)) {
+            if (currentUser == null) {
                 Map<String, Object> response = new HashMap<>();
                 response.put("success", false);
                 response.put("message", "Vui lòng đăng nhập");
                 return ResponseEntity.status(401).body(response);
             }
             
-            String username = jwtUtil.getUserNameFromJwtToken(token);
-            Optional<User> userOpt = userService.getUserByUsername(username);
-            
-            if (!userOpt.isPresent()) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", false);
-                response.put("message", "Người dùng không tồn tại");
-                return ResponseEntity.status(404).body(response);
-            }
-            
-            Cart cart = cartService.getOrCreateCartForUser(userOpt.get());
+            Cart cart = cartService.getOrCreateCartForUser(currentUser);
             CartItem cartItem = cartService.updateCartItemQuantity(cart, request.getProductId(), request.getQuantity());
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "Đã cập nhật số lượng");
-            response.put("cart", cart);
-            response.put("cartItem", cartItem);
-            response.put("totalItems", cart.getTotalItems());
-            response.put("totalPrice", cart.getTotalPrice());
+            CartView cartView = cartService.toView(cart);
+            response.put("cart", cartView);
+            response.put("cartItem", cartService.toItemView(cartItem));
+            response.put("totalItems", cartView.getTotalItems());
+            response.put("totalPrice", cartView.getTotalPrice());
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -180,37 +142,26 @@ public class CartController {
 
     // Xóa sản phẩm khỏi cart (yêu cầu đăng nhập)
     @DeleteMapping("/remove/{productId}")
-    public ResponseEntity<?> removeFromCart(@PathVariable Long productId, HttpServletRequest request) {
+    public ResponseEntity<?> removeFromCart(@PathVariable Long productId, @CurrentUser User currentUser) {
         try {
-            String token = getTokenFromRequest(request);
-            
-            if (token == null || !jwtUtil.validateJwtToken(token)) {
+            if (currentUser == null) {
                 Map<String, Object> response = new HashMap<>();
                 response.put("success", false);
                 response.put("message", "Vui lòng đăng nhập");
                 return ResponseEntity.status(401).body(response);
             }
             
-            String username = jwtUtil.getUserNameFromJwtToken(token);
-            Optional<User> userOpt = userService.getUserByUsername(username);
-            
-            if (!userOpt.isPresent()) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", false);
-                response.put("message", "Người dùng không tồn tại");
-                return ResponseEntity.status(404).body(response);
-            }
-            
-            Cart cart = cartService.getOrCreateCartForUser(userOpt.get());
+            Cart cart = cartService.getOrCreateCartForUser(currentUser);
 
             cartService.removeFromCart(cart, productId);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "Đã xóa sản phẩm khỏi giỏ hàng");
-            response.put("cart", cart);
-            response.put("totalItems", cart.getTotalItems());
-            response.put("totalPrice", cart.getTotalPrice());
+            CartView cartView = cartService.toView(cart);
+            response.put("cart", cartView);
+            response.put("totalItems", cartView.getTotalItems());
+            response.put("totalPrice", cartView.getTotalPrice());
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -223,28 +174,16 @@ public class CartController {
 
     // Xóa tất cả items trong cart (yêu cầu đăng nhập)
     @DeleteMapping("/clear")
-    public ResponseEntity<?> clearCart(HttpServletRequest request) {
+    public ResponseEntity<?> clearCart(@CurrentUser User currentUser) {
         try {
-            String token = getTokenFromRequest(request);
-            
-            if (token == null || !jwtUtil.validateJwtToken(token)) {
+            if (currentUser == null) {
                 Map<String, Object> response = new HashMap<>();
                 response.put("success", false);
                 response.put("message", "Vui lòng đăng nhập");
                 return ResponseEntity.status(401).body(response);
             }
             
-            String username = jwtUtil.getUserNameFromJwtToken(token);
-            Optional<User> userOpt = userService.getUserByUsername(username);
-            
-            if (!userOpt.isPresent()) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", false);
-                response.put("message", "Người dùng không tồn tại");
-                return ResponseEntity.status(404).body(response);
-            }
-
-            Cart cart = cartService.getOrCreateCartForUser(userOpt.get());
+            Cart cart = cartService.getOrCreateCartForUser(currentUser);
             cartService.clearCart(cart);
             
             Map<String, Object> response = new HashMap<>();
@@ -262,33 +201,24 @@ public class CartController {
 
     // Merge guest cart với user cart khi login
     @PostMapping("/merge")
-    public ResponseEntity<?> mergeCart(@RequestParam String sessionId, HttpServletRequest request) {
+    public ResponseEntity<?> mergeCart(@RequestParam String sessionId, @CurrentUser User currentUser) {
         try {
-            String token = getTokenFromRequest(request);
-            if (token == null) {
+            if (currentUser == null) {
                 Map<String, Object> response = new HashMap<>();
                 response.put("success", false);
                 response.put("message", "Cần đăng nhập");
                 return ResponseEntity.badRequest().body(response);
             }
 
-            String username = jwtUtil.getUserNameFromJwtToken(token);
-            Optional<User> userOpt = userService.getUserByUsername(username);
-            if (!userOpt.isPresent()) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", false);
-                response.put("message", "Không tìm thấy user");
-                return ResponseEntity.badRequest().body(response);
-            }
-            
-            Cart mergedCart = cartService.mergeGuestCartWithUserCart(sessionId, userOpt.get());
+            Cart mergedCart = cartService.mergeGuestCartWithUserCart(sessionId, currentUser);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "Đã hợp nhất giỏ hàng");
-            response.put("cart", mergedCart);
-            response.put("totalItems", mergedCart.getTotalItems());
-            response.put("totalPrice", mergedCart.getTotalPrice());
+            CartView cartView = cartService.toView(mergedCart);
+            response.put("cart", cartView);
+            response.put("totalItems", cartView.getTotalItems());
+            response.put("totalPrice", cartView.getTotalPrice());
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -300,16 +230,10 @@ public class CartController {
     }
 
     // Helper methods
-    private Cart getCurrentCart(HttpServletRequest request, String sessionId) {
-        String token = getTokenFromRequest(request);
-        
-        if (token != null && jwtUtil.validateJwtToken(token)) {
+    private Cart getCurrentCart(User currentUser, String sessionId) {
+        if (currentUser != null) {
             // User đã đăng nhập
-            String username = jwtUtil.getUserNameFromJwtToken(token);
-            Optional<User> userOpt = userService.getUserByUsername(username);
-            if (userOpt.isPresent()) {
-                return cartService.getOrCreateCartForUser(userOpt.get());
-            }
+            return cartService.getOrCreateCartForUser(currentUser);
         } else if (sessionId != null) {
             // Guest user
             Optional<Cart> cart = cartService.getCartBySessionId(sessionId);
@@ -319,14 +243,6 @@ public class CartController {
         return null;
     }
 
-    private String getTokenFromRequest(HttpServletRequest request) {
-        String authHeader = request.getHeader("Authorization");
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            return authHeader.substring(7);
-        }
-        return null;
-    }
-
     private Map<String, Object> createEmptyCartResponse() {
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
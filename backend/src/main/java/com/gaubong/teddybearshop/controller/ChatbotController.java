@@ -9,12 +9,19 @@ import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/chatbot")
@@ -26,39 +33,67 @@ public class ChatbotController {
     @Autowired
     private ChatbotService chatbotService;
 
+    @Value("${openai.stream.timeout-seconds:120}")
+    private long streamTimeoutSeconds;
+
+    // Trả về CompletableFuture: thread Tomcat được giải phóng trong lúc chờ OpenAI
     @PostMapping("/chat")
-    public ResponseEntity<?> chat(
+    public CompletableFuture<ResponseEntity<?>> chat(
             @Valid @RequestBody ChatRequest request,
             @AuthenticationPrincipal User user) {
-        
+
+        logger.info("POST /chatbot/chat - User: {}, Message: {}", 
+            user != null ? user.getUsername() : "anonymous", 
+            request.getMessage());
+
+        CompletableFuture<String> response;
         try {
-            logger.info("POST /chatbot/chat - User: {}, Message: {}", 
-                user != null ? user.getUsername() : "anonymous", 
-                request.getMessage());
+            response = chatbotService.getChatResponseAsync(request.getMessage(), user);
+        } catch (RejectedExecutionException e) {
+            logger.warn("POST /chatbot/chat - Chat pool is full, rejecting request");
+            return CompletableFuture.completedFuture(ResponseEntity.status(503)
+                .header("Retry-After", "5")
+                .body("Chatbot đang quá tải, vui lòng thử lại sau giây lát"));
+        }
+
+        return response.handle((botResponse, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                logger.error("POST /chatbot/chat - Error: {}", cause.getMessage(), cause);
+                return ResponseEntity.badRequest()
+                    .body("Có lỗi xảy ra: " + cause.getMessage());
+            }
 
-            String response = chatbotService.getChatResponse(request.getMessage(), user);
-            
             logger.info("POST /chatbot/chat - Response generated successfully");
-            
+
             return ResponseEntity.ok(new ChatResponse(
                 null, 
                 request.getMessage(), 
-                response, 
+                botResponse, 
                 java.time.LocalDateTime.now()
             ));
+        });
+    }
 
-        } catch (Exception e) {
-            logger.error("POST /chatbot/chat - Error: {}", e.getMessage(), e);
-            return ResponseEntity.badRequest()
-                .body("Có lỗi xảy ra: " + e.getMessage());
-        }
+    // Stream câu trả lời dạng SSE: "token" cho từng đoạn, "done" khi xong, "error" nếu lỗi
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter chatStream(
+            @Valid @RequestBody ChatRequest request,
+            @AuthenticationPrincipal User user) {
+
+        logger.info("POST /chatbot/chat/stream - User: {}", user != null ? user.getUsername() : "anonymous");
+
+        SseEmitter emitter = new SseEmitter(streamTimeoutSeconds * 1000);
+        chatbotService.streamChatResponse(request.getMessage(), user, emitter);
+        return emitter;
     }
 
     @GetMapping("/history")
     public ResponseEntity<?> getChatHistory(
             @AuthenticationPrincipal User user,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String cursor) {
         
         try {
             if (user == null) {
@@ -66,6 +101,11 @@ public class ChatbotController {
                     .body("Vui lòng đăng nhập để xem lịch sử chat");
             }
 
+            // Cursor mode (opt-in): pass cursor= (empty) for the first page, then nextCursor
+            if (cursor != null) {
+                return ResponseEntity.ok(chatbotService.getChatHistoryAfter(user, cursor, size));
+            }
+
             Pageable pageable = PageRequest.of(page, size);
             Page<ChatMessage> chatHistory = chatbotService.getChatHistory(user, pageable);
             
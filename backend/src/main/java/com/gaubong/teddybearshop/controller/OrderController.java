@@ -1,24 +1,28 @@
 package com.gaubong.teddybearshop.controller;
 
+import com.gaubong.teddybearshop.diagnostics.QueryBudget;
 import com.gaubong.teddybearshop.dto.CreateOrderRequest;
 import com.gaubong.teddybearshop.entity.Order;
 import com.gaubong.teddybearshop.entity.User;
+import com.gaubong.teddybearshop.exception.InsufficientStockException;
+import com.gaubong.teddybearshop.security.CurrentUser;
+import com.gaubong.teddybearshop.service.IdempotencyService;
 import com.gaubong.teddybearshop.service.OrderService;
 import com.gaubong.teddybearshop.service.UserService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.TransientDataAccessException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -33,9 +37,12 @@ public class OrderController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private IdempotencyService idempotencyService;
+
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Page<Order>> getAllOrders(
+    public ResponseEntity<?> getAllOrders(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "createdAt") String sortBy,
@@ -44,14 +51,9 @@ public class OrderController {
             @RequestParam(required = false) LocalDateTime startDate,
             @RequestParam(required = false) LocalDateTime endDate,
             @RequestParam(required = false) BigDecimal minAmount,
-            @RequestParam(required = false) BigDecimal maxAmount) {
+            @RequestParam(required = false) BigDecimal maxAmount,
+            @RequestParam(required = false) String cursor) {
 
-        Sort sort = sortDir.equalsIgnoreCase("desc") ? 
-                   Sort.by(sortBy).descending() : 
-                   Sort.by(sortBy).ascending();
-        
-        Pageable pageable = PageRequest.of(page, size, sort);
-        
         Order.OrderStatus orderStatus = null;
         if (status != null) {
             try {
@@ -60,6 +62,25 @@ public class OrderController {
                 return ResponseEntity.badRequest().build();
             }
         }
+
+        // Cursor mode (opt-in): newest first only, pass cursor= (empty) for the first page
+        if (cursor != null) {
+            if (!isNewestFirst(sortBy, sortDir)) {
+                return ResponseEntity.badRequest().body("Cursor paging only supports sortBy=createdAt&sortDir=desc");
+            }
+            try {
+                return ResponseEntity.ok(orderService.getOrdersWithFiltersAfter(
+                        orderStatus, startDate, endDate, cursor, size));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            }
+        }
+
+        Sort sort = sortDir.equalsIgnoreCase("desc") ? 
+                   Sort.by(sortBy).descending() : 
+                   Sort.by(sortBy).ascending();
+        
+        Pageable pageable = PageRequest.of(page, size, sort);
         
         Page<Order> orders = orderService.getOrdersWithFilters(
                 null, orderStatus, startDate, endDate, pageable);
@@ -68,10 +89,12 @@ public class OrderController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Order> getOrderById(@PathVariable Long id) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User currentUser = (User) authentication.getPrincipal();
-        
+    @QueryBudget(statements = 3)
+    public ResponseEntity<Order> getOrderById(@PathVariable Long id, @CurrentUser User currentUser) {
+        if (currentUser == null) {
+            return ResponseEntity.status(401).build();
+        }
+
         return orderService.getOrderById(id)
                 .map(order -> {
                     // Users can only see their own orders, admins can see all
@@ -87,14 +110,25 @@ public class OrderController {
 
     @GetMapping("/my-orders")
     @PreAuthorize("hasRole('CUSTOMER') or hasRole('ADMIN')")
-    public ResponseEntity<Page<Order>> getMyOrders(
+    @QueryBudget(statements = 4)
+    public ResponseEntity<?> getMyOrders(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "createdAt") String sortBy,
-            @RequestParam(defaultValue = "desc") String sortDir) {
+            @RequestParam(defaultValue = "desc") String sortDir,
+            @RequestParam(required = false) String cursor,
+            @CurrentUser User currentUser) {
 
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User currentUser = (User) authentication.getPrincipal();
+        if (cursor != null) {
+            if (!isNewestFirst(sortBy, sortDir)) {
+                return ResponseEntity.badRequest().body("Cursor paging only supports sortBy=createdAt&sortDir=desc");
+            }
+            try {
+                return ResponseEntity.ok(orderService.getOrdersByUserAfter(currentUser.getId(), cursor, size));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            }
+        }
 
         Sort sort = sortDir.equalsIgnoreCase("desc") ? 
                    Sort.by(sortBy).descending() : 
@@ -108,10 +142,7 @@ public class OrderController {
 
     @GetMapping("/my-orders/total")
     @PreAuthorize("hasRole('CUSTOMER') or hasRole('ADMIN')")
-    public ResponseEntity<BigDecimal> getMyTotalAmount() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User currentUser = (User) authentication.getPrincipal();
-        
+    public ResponseEntity<BigDecimal> getMyTotalAmount(@CurrentUser User currentUser) {
         BigDecimal totalAmount = orderService.getTotalAmountByUserId(currentUser.getId());
         return ResponseEntity.ok(totalAmount);
     }
@@ -137,13 +168,28 @@ public class OrderController {
 
     @PostMapping
     @PreAuthorize("hasRole('CUSTOMER') or hasRole('ADMIN')")
-    public ResponseEntity<?> createOrder(@Valid @RequestBody CreateOrderRequest orderRequest) {
+    @QueryBudget(statements = 15)
+    public ResponseEntity<?> createOrder(
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @Valid @RequestBody CreateOrderRequest orderRequest,
+            @CurrentUser User currentUser) {
+        // A retry with the same Idempotency-Key gets the first response instead of a second order
+        return idempotencyService.execute("POST /orders:" + currentUser.getId(), idempotencyKey, orderRequest,
+                () -> placeOrder(currentUser, orderRequest));
+    }
+
+    private ResponseEntity<?> placeOrder(User currentUser, CreateOrderRequest orderRequest) {
         try {
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            User currentUser = (User) authentication.getPrincipal();
-            
             Order createdOrder = orderService.createOrder(currentUser, orderRequest);
             return ResponseEntity.ok(createdOrder);
+        } catch (InsufficientStockException e) {
+            Map<String, Object> body = new HashMap<>();
+            body.put("message", e.getMessage());
+            body.put("shortLines", e.getShortLines());
+            return ResponseEntity.status(409).body(body);
+        } catch (TransientDataAccessException e) {
+            // Lock timeout / deadlock: safe to retry, so not a 4xx that would be replayed
+            return ResponseEntity.status(503).body("Order could not be placed right now, please retry");
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body("Error: " + e.getMessage());
         } catch (Exception e) {
@@ -182,11 +228,8 @@ public class OrderController {
 
     @DeleteMapping("/{id}/cancel")
     @PreAuthorize("hasRole('CUSTOMER') or hasRole('ADMIN')")
-    public ResponseEntity<?> cancelOrder(@PathVariable Long id) {
+    public ResponseEntity<?> cancelOrder(@PathVariable Long id, @CurrentUser User currentUser) {
         try {
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            User currentUser = (User) authentication.getPrincipal();
-            
             // Check if user owns the order or is admin
             Order order = orderService.getOrderById(id).orElse(null);
             if (order == null) {
@@ -219,4 +262,8 @@ public class OrderController {
             return ResponseEntity.badRequest().build();
         }
     }
-}
\ No newline at end of file
+
+    private boolean isNewestFirst(String sortBy, String sortDir) {
+        return "createdAt".equals(sortBy) && sortDir.equalsIgnoreCase("desc");
+    }
+}
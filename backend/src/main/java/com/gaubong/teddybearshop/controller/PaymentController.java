@@ -2,10 +2,15 @@ package com.gaubong.teddybearshop.controller;
 
 import com.gaubong.teddybearshop.dto.VNPayPaymentRequest;
 import com.gaubong.teddybearshop.dto.VNPayPaymentResponse;
+import com.gaubong.teddybearshop.entity.User;
+import com.gaubong.teddybearshop.service.IdempotencyService;
+import com.gaubong.teddybearshop.service.PaymentMethodService;
 import com.gaubong.teddybearshop.service.VNPayService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.servlet.http.HttpServletRequest;
@@ -19,6 +24,12 @@ public class PaymentController {
     
     @Autowired
     private VNPayService vnPayService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private PaymentMethodService paymentMethodService;
     
     /**
      * Create VNPay payment URL
@@ -26,9 +37,20 @@ public class PaymentController {
      */
     @PostMapping("/vnpay/create")
     public ResponseEntity<?> createVNPayPayment(
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @RequestBody VNPayPaymentRequest request,
             HttpServletRequest httpRequest) {
-        
+
+        // Retries with the same Idempotency-Key get the payment URL created the first time
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String caller = authentication != null && authentication.getPrincipal() instanceof User
+                ? String.valueOf(((User) authentication.getPrincipal()).getId())
+                : "anonymous";
+        return idempotencyService.execute("POST /payment/vnpay/create:" + caller, idempotencyKey, request,
+                () -> createPayment(request, httpRequest));
+    }
+
+    private ResponseEntity<?> createPayment(VNPayPaymentRequest request, HttpServletRequest httpRequest) {
         try {
             VNPayPaymentResponse response = vnPayService.createPayment(request, httpRequest);
             
@@ -97,30 +119,6 @@ public class PaymentController {
      */
     @GetMapping("/methods")
     public ResponseEntity<?> getPaymentMethods() {
-        Map<String, Object> methods = new HashMap<>();
-        methods.put("cod", Map.of(
-            "name", "Thanh toán khi nhận hàng (COD)",
-            "description", "Thanh toán bằng tiền mặt khi nhận hàng",
-            "enabled", true
-        ));
-        methods.put("vnpay", Map.of(
-            "name", "Thanh toán qua VNPay",
-            "description", "Thanh toán qua thẻ ATM, Visa, MasterCard, QR Code",
-            "enabled", true,
-            "banks", getBankCodes()
-        ));
-        return ResponseEntity.ok(methods);
-    }
-    
-    /**
-     * Get supported bank codes
-     */
-    private Map<String, String> getBankCodes() {
-        Map<String, String> banks = new HashMap<>();
-        banks.put("VNPAYQR", "Thanh toán qua ứng dụng hỗ trợ VNPAYQR");
-        banks.put("VNBANK", "Thanh toán qua ATM-Tài khoản ngân hàng nội địa");
-        banks.put("INTCARD", "Thanh toán qua thẻ quốc tế");
-        banks.put("", "Cổng thanh toán VNPay (tất cả phương thức)");
-        return banks;
+        return ResponseEntity.ok(paymentMethodService.getPaymentMethods());
     }
 }
@@ -1,5 +1,7 @@
 package com.gaubong.teddybearshop.controller;
 
+import com.gaubong.teddybearshop.dto.CursorSlice;
+import com.gaubong.teddybearshop.dto.ProductFacets;
 import com.gaubong.teddybearshop.entity.Product;
 import com.gaubong.teddybearshop.service.ProductService;
 import jakarta.validation.Valid;
@@ -24,7 +26,7 @@ public class ProductController {
     private ProductService productService;
 
     @GetMapping
-    public ResponseEntity<Page<Product>> getAllProducts(
+    public ResponseEntity<?> getAllProducts(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
@@ -33,7 +35,22 @@ public class ProductController {
             @RequestParam(required = false) Long categoryId,
             @RequestParam(required = false) BigDecimal minPrice,
             @RequestParam(required = false) BigDecimal maxPrice,
-            @RequestParam(required = false) Boolean inStock) {
+            @RequestParam(required = false) Boolean inStock,
+            @RequestParam(required = false) String cursor) {
+
+        // Cursor mode (opt-in): pass cursor= (empty) for the first page, then nextCursor
+        if (cursor != null) {
+            try {
+                CursorSlice<Product> products = productService.getProductsWithFiltersAfter(
+                        name, categoryId, minPrice, maxPrice, inStock,
+                        sortBy, sortDir.equalsIgnoreCase("desc"), cursor, size);
+                return ResponseEntity.ok(products);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            } catch (IllegalStateException e) {
+                return ResponseEntity.status(503).body(e.getMessage());
+            }
+        }
 
         Sort sort = sortDir.equalsIgnoreCase("desc") ? 
                    Sort.by(sortBy).descending() : 
@@ -47,6 +64,21 @@ public class ProductController {
         return ResponseEntity.ok(products);
     }
 
+    @GetMapping("/facets")
+    public ResponseEntity<?> getProductFacets(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(required = false) Boolean inStock) {
+        try {
+            ProductFacets facets = productService.getProductFacets(name, categoryId, minPrice, maxPrice, inStock);
+            return ResponseEntity.ok(facets);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(503).body(e.getMessage());
+        }
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<Product> getProductById(@PathVariable Long id) {
         return productService.getProductById(id)
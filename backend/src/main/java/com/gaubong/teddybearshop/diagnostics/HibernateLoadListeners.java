@@ -0,0 +1,38 @@
+package com.gaubong.teddybearshop.diagnostics;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Feeds entity loads and lazy collection fetches into QueryCounter, so an N+1
+ * shows up as "1 query, 40 collection fetches" rather than only a statement count.
+ */
+@Component
+public class HibernateLoadListeners {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Value("${app.query-budget.enabled:true}")
+    private boolean enabled;
+
+    @PostConstruct
+    public void register() {
+        if (!enabled) {
+            return;
+        }
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_LOAD, (PostLoadEventListener) event -> QueryCounter.onEntityLoad());
+        registry.appendListeners(EventType.INIT_COLLECTION,
+                (InitializeCollectionEventListener) event -> QueryCounter.onCollectionFetch());
+    }
+}
@@ -0,0 +1,18 @@
+package com.gaubong.teddybearshop.diagnostics;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Most JDBC statements one request to this endpoint may run, including
+ * authentication and response serialization. Counted at the DataSource, so
+ * JPA and JdbcTemplate statements both count; a batch counts as one.
+ * Endpoints without it get app.query-budget.default-statements.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface QueryBudget {
+    int statements();
+}
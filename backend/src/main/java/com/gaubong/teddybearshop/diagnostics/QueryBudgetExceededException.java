@@ -0,0 +1,12 @@
+package com.gaubong.teddybearshop.diagnostics;
+
+/**
+ * Thrown from the statement that goes over the endpoint's query budget
+ * when app.query-budget.enforce is on, so the stack trace shows the N+1 site.
+ */
+public class QueryBudgetExceededException extends RuntimeException {
+
+    public QueryBudgetExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,76 @@
+package com.gaubong.teddybearshop.diagnostics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Opens a QueryCounter scope around each request (ahead of Spring Security, so
+ * the JWT user lookup counts too) and reports requests that ran more statements
+ * than their endpoint's budget. With app.query-budget.enforce the offending
+ * statement fails instead, which turns an N+1 regression into a failing request
+ * in CI or a test profile.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class QueryBudgetFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryBudgetFilter.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.query-budget.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.query-budget.default-statements:30}")
+    private int defaultStatements;
+
+    @Value("${app.query-budget.enforce:false}")
+    private boolean enforce;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        QueryCounter.Scope scope = QueryCounter.begin(defaultStatements, enforce);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            QueryCounter.end();
+            report(scope);
+        }
+    }
+
+    private void report(QueryCounter.Scope scope) {
+        // Unmatched requests (404, static resources) have no route to attribute counts to
+        if (scope.endpoint == null) {
+            return;
+        }
+        meterRegistry.summary("http.server.requests.statements", "endpoint", scope.endpoint).record(scope.statements);
+        if (scope.isOverBudget()) {
+            meterRegistry.counter("query.budget.exceeded", "endpoint", scope.endpoint).increment();
+            logger.warn("Query budget exceeded for {}: {} statements (budget {}), {} entity loads, {} collection fetches",
+                    scope.endpoint, scope.statements, scope.budget, scope.entityLoads, scope.collectionFetches);
+        } else if (logger.isDebugEnabled()) {
+            logger.debug("{}: {} statements, {} entity loads, {} collection fetches",
+                    scope.endpoint, scope.statements, scope.entityLoads, scope.collectionFetches);
+        }
+    }
+}
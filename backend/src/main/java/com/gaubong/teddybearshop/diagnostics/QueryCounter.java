@@ -0,0 +1,79 @@
+package com.gaubong.teddybearshop.diagnostics;
+
+/**
+ * Per-request counts of JDBC statements, entity loads and collection fetches,
+ * kept in a ThreadLocal opened by QueryBudgetFilter. Work done on other threads
+ * (async chat, login pool, write-behind flushes) is not attributed to the request.
+ */
+public final class QueryCounter {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private QueryCounter() {
+    }
+
+    static Scope begin(int budget, boolean enforce) {
+        Scope scope = new Scope(budget, enforce);
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    static Scope current() {
+        return CURRENT.get();
+    }
+
+    static void onStatement() {
+        Scope scope = CURRENT.get();
+        if (scope != null) {
+            scope.onStatement();
+        }
+    }
+
+    static void onEntityLoad() {
+        Scope scope = CURRENT.get();
+        if (scope != null) {
+            scope.entityLoads++;
+        }
+    }
+
+    static void onCollectionFetch() {
+        Scope scope = CURRENT.get();
+        if (scope != null) {
+            scope.collectionFetches++;
+        }
+    }
+
+    static final class Scope {
+        private final boolean enforce;
+        int budget;
+        String endpoint;
+        int statements;
+        int entityLoads;
+        int collectionFetches;
+        private boolean failed;
+
+        private Scope(int budget, boolean enforce) {
+            this.budget = budget;
+            this.enforce = enforce;
+        }
+
+        boolean isOverBudget() {
+            return statements > budget;
+        }
+
+        private void onStatement() {
+            statements++;
+            // Fail once, at the first statement over budget; later statements (error handling) run normally
+            if (enforce && !failed && statements > budget) {
+                failed = true;
+                throw new QueryBudgetExceededException("Query budget exceeded"
+                        + (endpoint != null ? " for " + endpoint : "")
+                        + ": statement " + statements + " of " + budget);
+            }
+        }
+    }
+}
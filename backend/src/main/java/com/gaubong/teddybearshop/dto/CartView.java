@@ -0,0 +1,58 @@
+package com.gaubong.teddybearshop.dto;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cart response model built by CartService; totals are computed once there,
+ * so serializing it never touches entities or the persistence context.
+ */
+public class CartView {
+    private Long id;
+    private List<CartItemView> items = new ArrayList<>();
+    private int totalItems;
+    private BigDecimal totalPrice = BigDecimal.ZERO;
+
+    public CartView() {}
+
+    public CartView(Long id, List<CartItemView> items, int totalItems, BigDecimal totalPrice) {
+        this.id = id;
+        this.items = items;
+        this.totalItems = totalItems;
+        this.totalPrice = totalPrice;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public List<CartItemView> getItems() {
+        return items;
+    }
+
+    public void setItems(List<CartItemView> items) {
+        this.items = items;
+    }
+
+    public int getTotalItems() {
+        return totalItems;
+    }
+
+    public void setTotalItems(int totalItems) {
+        this.totalItems = totalItems;
+    }
+
+    public BigDecimal getTotalPrice() {
+        return totalPrice;
+    }
+
+    public void setTotalPrice(BigDecimal totalPrice) {
+        this.totalPrice = totalPrice;
+    }
+}
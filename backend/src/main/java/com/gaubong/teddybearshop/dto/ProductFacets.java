@@ -0,0 +1,148 @@
+package com.gaubong.teddybearshop.dto;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Facet counts for the product listing filters (GET /products/facets).
+ * Each facet is counted with every filter applied except its own, so the
+ * client can show how many products picking another value would return.
+ */
+public class ProductFacets {
+    private long total;
+    private List<FacetCount> categories = new ArrayList<>();
+    private List<FacetCount> sizes = new ArrayList<>();
+    private List<FacetCount> colors = new ArrayList<>();
+    private List<FacetCount> materials = new ArrayList<>();
+    private List<FacetCount> ageRanges = new ArrayList<>();
+    private List<PriceRangeCount> priceRanges = new ArrayList<>();
+
+    public ProductFacets() {}
+
+    // Getters and Setters
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public List<FacetCount> getCategories() {
+        return categories;
+    }
+
+    public void setCategories(List<FacetCount> categories) {
+        this.categories = categories;
+    }
+
+    public List<FacetCount> getSizes() {
+        return sizes;
+    }
+
+    public void setSizes(List<FacetCount> sizes) {
+        this.sizes = sizes;
+    }
+
+    public List<FacetCount> getColors() {
+        return colors;
+    }
+
+    public void setColors(List<FacetCount> colors) {
+        this.colors = colors;
+    }
+
+    public List<FacetCount> getMaterials() {
+        return materials;
+    }
+
+    public void setMaterials(List<FacetCount> materials) {
+        this.materials = materials;
+    }
+
+    public List<FacetCount> getAgeRanges() {
+        return ageRanges;
+    }
+
+    public void setAgeRanges(List<FacetCount> ageRanges) {
+        this.ageRanges = ageRanges;
+    }
+
+    public List<PriceRangeCount> getPriceRanges() {
+        return priceRanges;
+    }
+
+    public void setPriceRanges(List<PriceRangeCount> priceRanges) {
+        this.priceRanges = priceRanges;
+    }
+
+    public static class FacetCount {
+        private String value;
+        private long count;
+
+        public FacetCount() {}
+
+        public FacetCount(String value, long count) {
+            this.value = value;
+            this.count = count;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public void setCount(long count) {
+            this.count = count;
+        }
+    }
+
+    /**
+     * Price bucket [minPrice, maxPrice); maxPrice is null for the open-ended last bucket.
+     */
+    public static class PriceRangeCount {
+        private BigDecimal minPrice;
+        private BigDecimal maxPrice;
+        private long count;
+
+        public PriceRangeCount() {}
+
+        public PriceRangeCount(BigDecimal minPrice, BigDecimal maxPrice, long count) {
+            this.minPrice = minPrice;
+            this.maxPrice = maxPrice;
+            this.count = count;
+        }
+
+        public BigDecimal getMinPrice() {
+            return minPrice;
+        }
+
+        public void setMinPrice(BigDecimal minPrice) {
+            this.minPrice = minPrice;
+        }
+
+        public BigDecimal getMaxPrice() {
+            return maxPrice;
+        }
+
+        public void setMaxPrice(BigDecimal maxPrice) {
+            this.maxPrice = maxPrice;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public void setCount(long count) {
+            this.count = count;
+        }
+    }
+}
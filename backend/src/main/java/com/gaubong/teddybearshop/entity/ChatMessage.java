@@ -4,7 +4,11 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "chat_messages")
+@Table(name = "chat_messages", indexes = {
+        @Index(name = "idx_chat_messages_user_created", columnList = "user_id, created_at, id"),
+        // Retention job: finds the newest expired row without scanning the table
+        @Index(name = "idx_chat_messages_created", columnList = "created_at")
+})
 public class ChatMessage {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -20,6 +24,11 @@ public class ChatMessage {
     @Column(length = 4000)
     private String botResponse;
 
+    // Answer came from a context-free prompt (no history, summary or product data),
+    // so ChatFaqCache may serve it to other users; null on rows written before the flag
+    @Column(name = "shareable")
+    private Boolean shareable;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
@@ -70,6 +79,14 @@ public class ChatMessage {
         this.botResponse = botResponse;
     }
 
+    public Boolean getShareable() {
+        return shareable;
+    }
+
+    public void setShareable(Boolean shareable) {
+        this.shareable = shareable;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -1,5 +1,6 @@
 package com.gaubong.teddybearshop.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
@@ -57,6 +58,15 @@ public class User implements UserDetails {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    // Rolling chatbot summary of turns older than the verbatim window, up to chatSummaryUntil
+    @JsonIgnore
+    @Column(name = "chat_summary", length = 2000)
+    private String chatSummary;
+
+    @JsonIgnore
+    @Column(name = "chat_summary_until")
+    private LocalDateTime chatSummaryUntil;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -138,6 +148,12 @@ public class User implements UserDetails {
     public LocalDateTime getUpdatedAt() { return updatedAt; }
     public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
 
+    public String getChatSummary() { return chatSummary; }
+    public void setChatSummary(String chatSummary) { this.chatSummary = chatSummary; }
+
+    public LocalDateTime getChatSummaryUntil() { return chatSummaryUntil; }
+    public void setChatSummaryUntil(LocalDateTime chatSummaryUntil) { this.chatSummaryUntil = chatSummaryUntil; }
+
     public enum Role {
         CUSTOMER, ADMIN
     }
@@ -0,0 +1,55 @@
+package com.gaubong.teddybearshop.exception;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Thrown when checkout cannot take stock for one or more order lines.
+ * Carries every short line, not just the first, so the client can fix the cart in one go.
+ */
+public class InsufficientStockException extends RuntimeException {
+
+    private final List<ShortLine> shortLines;
+
+    public InsufficientStockException(List<ShortLine> shortLines) {
+        super("Insufficient stock for: " + shortLines.stream()
+                .map(line -> (line.getProductName() != null ? line.getProductName() : "product " + line.getProductId())
+                        + " (requested " + line.getRequested() + ", available " + line.getAvailable() + ")")
+                .collect(Collectors.joining(", ")));
+        this.shortLines = shortLines;
+    }
+
+    public List<ShortLine> getShortLines() {
+        return shortLines;
+    }
+
+    public static class ShortLine {
+        private final Long productId;
+        private final String productName;
+        private final int requested;
+        private final int available;
+
+        public ShortLine(Long productId, String productName, int requested, int available) {
+            this.productId = productId;
+            this.productName = productName;
+            this.requested = requested;
+            this.available = available;
+        }
+
+        public Long getProductId() {
+            return productId;
+        }
+
+        public String getProductName() {
+            return productName;
+        }
+
+        public int getRequested() {
+            return requested;
+        }
+
+        public int getAvailable() {
+            return available;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.gaubong.teddybearshop.entity.Cart;
 import com.gaubong.teddybearshop.entity.CartItem;
 import com.gaubong.teddybearshop.entity.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -27,6 +28,11 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     // Xóa tất cả cart items theo cart
     void deleteByCart(Cart cart);
     
+    // Xóa tất cả items của cart bằng một câu DELETE (deleteByCart load và xóa từng item)
+    @Modifying
+    @Query("DELETE FROM CartItem ci WHERE ci.cart.id = :cartId")
+    int bulkDeleteByCartId(@Param("cartId") Long cartId);
+    
     // Xóa cart item theo cart và product
     void deleteByCartAndProduct(Cart cart, Product product);
     
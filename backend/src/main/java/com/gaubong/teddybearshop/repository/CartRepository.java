@@ -2,6 +2,7 @@ package com.gaubong.teddybearshop.repository;
 
 import com.gaubong.teddybearshop.entity.Cart;
 import com.gaubong.teddybearshop.entity.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -23,6 +24,19 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
     // Tìm cart theo session ID (cho guest users)
     Optional<Cart> findBySessionId(String sessionId);
     
+    // Cart + items + product của từng item trong một query (fetch plan), tránh N+1 khi tính tổng
+    @EntityGraph(attributePaths = {"cartItems", "cartItems.product"})
+    @Query("SELECT c FROM Cart c WHERE c.user = :user")
+    Optional<Cart> findWithItemsByUser(@Param("user") User user);
+    
+    @EntityGraph(attributePaths = {"cartItems", "cartItems.product"})
+    @Query("SELECT c FROM Cart c WHERE c.user.id = :userId")
+    Optional<Cart> findWithItemsByUserId(@Param("userId") Long userId);
+    
+    @EntityGraph(attributePaths = {"cartItems", "cartItems.product"})
+    @Query("SELECT c FROM Cart c WHERE c.sessionId = :sessionId")
+    Optional<Cart> findWithItemsBySessionId(@Param("sessionId") String sessionId);
+    
     // Tìm tất cả cart đã hết hạn
     @Query("SELECT c FROM Cart c WHERE c.expiresAt IS NOT NULL AND c.expiresAt < :currentTime")
     List<Cart> findExpiredCarts(@Param("currentTime") LocalDateTime currentTime);
@@ -4,13 +4,55 @@ import com.gaubong.teddybearshop.entity.ChatMessage;
 import com.gaubong.teddybearshop.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
+public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long>, ChatMessageRepositoryCustom {
     Page<ChatMessage> findByUserOrderByCreatedAtDesc(User user, Pageable pageable);
     List<ChatMessage> findTop10ByUserOrderByCreatedAtDesc(User user);
+
+    // Keyset page, newest first: rows strictly before (:createdAt, :id)
+    @Query("SELECT m FROM ChatMessage m WHERE m.user = :user AND " +
+           "(m.createdAt < :createdAt OR (m.createdAt = :createdAt AND m.id < :id)) " +
+           "ORDER BY m.createdAt DESC, m.id DESC")
+    Slice<ChatMessage> findByUserBefore(@Param("user") User user,
+                                        @Param("createdAt") LocalDateTime createdAt,
+                                        @Param("id") Long id,
+                                        Pageable pageable);
+
+    // Most asked questions since :since as (userMessage, count), for warming the FAQ cache
+    @Query("SELECT m.userMessage, COUNT(m) FROM ChatMessage m WHERE m.createdAt >= :since " +
+           "GROUP BY m.userMessage ORDER BY COUNT(m) DESC")
+    List<Object[]> findFrequentQuestions(@Param("since") LocalDateTime since, Pageable pageable);
+
+    // Latest answer to the question that is safe to share between users
+    Optional<ChatMessage> findFirstByUserMessageAndShareableTrueOrderByCreatedAtDesc(String userMessage);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ChatMessage m WHERE m.user.id = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+
+    // Retention: expired rows are bounded by [min id, newest expired id] and deleted in id-range chunks
+    @Query("SELECT MIN(m.id) FROM ChatMessage m")
+    Long findMinId();
+
+    @Query("SELECT MAX(m.id) FROM ChatMessage m WHERE m.createdAt < :cutoff")
+    Long findMaxIdCreatedBefore(@Param("cutoff") LocalDateTime cutoff);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ChatMessage m WHERE m.id >= :fromId AND m.id < :toId AND m.createdAt < :cutoff")
+    int deleteExpiredInRange(@Param("fromId") Long fromId, @Param("toId") Long toId,
+                             @Param("cutoff") LocalDateTime cutoff);
 }
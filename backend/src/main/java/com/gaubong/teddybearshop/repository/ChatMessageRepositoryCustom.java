@@ -0,0 +1,14 @@
+package com.gaubong.teddybearshop.repository;
+
+import com.gaubong.teddybearshop.entity.ChatMessage;
+
+import java.util.List;
+
+public interface ChatMessageRepositoryCustom {
+
+    /**
+     * Insert the messages with a single JDBC batch. createdAt must already be set;
+     * messages do not become managed entities (no generated ids are read back).
+     */
+    void insertBatch(List<ChatMessage> messages);
+}
@@ -0,0 +1,29 @@
+package com.gaubong.teddybearshop.repository;
+
+import com.gaubong.teddybearshop.entity.ChatMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ChatMessageRepositoryImpl implements ChatMessageRepositoryCustom {
+
+    // IDENTITY ids stop Hibernate from batching inserts, so buffered chat messages go through JDBC
+    private static final String INSERT_SQL =
+            "INSERT INTO chat_messages (user_id, user_message, bot_response, shareable, created_at) VALUES (?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertBatch(List<ChatMessage> messages) {
+        List<Object[]> args = new ArrayList<>(messages.size());
+        for (ChatMessage message : messages) {
+            args.add(new Object[]{message.getUser().getId(), message.getUserMessage(),
+                    message.getBotResponse(), message.getShareable(), Timestamp.valueOf(message.getCreatedAt())});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, args);
+    }
+}
@@ -0,0 +1,14 @@
+package com.gaubong.teddybearshop.repository;
+
+import com.gaubong.teddybearshop.entity.OrderItem;
+
+import java.util.List;
+
+public interface OrderItemRepositoryCustom {
+
+    /**
+     * Insert all items of one order with a single JDBC batch.
+     * Items are written directly and do not become managed entities (no generated ids are read back).
+     */
+    void insertBatch(Long orderId, List<OrderItem> items);
+}
@@ -0,0 +1,28 @@
+package com.gaubong.teddybearshop.repository;
+
+import com.gaubong.teddybearshop.entity.OrderItem;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class OrderItemRepositoryImpl implements OrderItemRepositoryCustom {
+
+    // IDENTITY ids stop Hibernate from batching inserts, so order lines go through JDBC
+    private static final String INSERT_SQL =
+            "INSERT INTO order_items (order_id, product_id, quantity, unit_price, total_price) VALUES (?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertBatch(Long orderId, List<OrderItem> items) {
+        List<Object[]> args = new ArrayList<>(items.size());
+        for (OrderItem item : items) {
+            args.add(new Object[]{orderId, item.getProduct().getId(), item.getQuantity(),
+                    item.getUnitPrice(), item.getTotalPrice()});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, args);
+    }
+}
@@ -1,18 +1,22 @@
 package com.gaubong.teddybearshop.repository;
 
 import com.gaubong.teddybearshop.entity.Product;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductRepositoryCustom {
     
     List<Product> findByNameContainingIgnoreCase(String name);
     
@@ -29,7 +33,8 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
            "(:categoryId IS NULL OR p.categoryId = :categoryId) AND " +
            "(:minPrice IS NULL OR p.price >= :minPrice) AND " +
            "(:maxPrice IS NULL OR p.price <= :maxPrice) AND " +
-           "(:inStock IS NULL OR (:inStock = true AND p.stock > 0) OR (:inStock = false))")
+           "(:inStock IS NULL OR (:inStock = true AND p.stock > 0) OR (:inStock = false)) AND " +
+           "(p.isActive IS NULL OR p.isActive = true)")
     Page<Product> findProductsWithFilters(@Param("name") String name,
                                          @Param("categoryId") Long categoryId,
                                          @Param("minPrice") BigDecimal minPrice,
@@ -37,6 +42,29 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
                                          @Param("inStock") Boolean inStock,
                                          Pageable pageable);
     
+    // Keyset page ordered by id: rows after :afterId, no OFFSET and no COUNT query (Slice)
+    @Query("SELECT p FROM Product p WHERE " +
+           "(:name IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :name, '%'))) AND " +
+           "(:categoryId IS NULL OR p.categoryId = :categoryId) AND " +
+           "(:minPrice IS NULL OR p.price >= :minPrice) AND " +
+           "(:maxPrice IS NULL OR p.price <= :maxPrice) AND " +
+           "(:inStock IS NULL OR (:inStock = true AND p.stock > 0) OR (:inStock = false)) AND " +
+           "(p.isActive IS NULL OR p.isActive = true) AND " +
+           "p.id > :afterId " +
+           "ORDER BY p.id ASC")
+    Slice<Product> findProductsWithFiltersAfterId(@Param("name") String name,
+                                                 @Param("categoryId") Long categoryId,
+                                                 @Param("minPrice") BigDecimal minPrice,
+                                                 @Param("maxPrice") BigDecimal maxPrice,
+                                                 @Param("inStock") Boolean inStock,
+                                                 @Param("afterId") Long afterId,
+                                                 Pageable pageable);
+    
+    // SELECT ... FOR UPDATE in ascending id order, so concurrent checkouts lock rows in the same order
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Product p WHERE p.id IN :ids ORDER BY p.id ASC")
+    List<Product> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+    
     @Query("SELECT DISTINCT p.categoryId FROM Product p WHERE p.categoryId IS NOT NULL")
     List<Long> findAllCategories();
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.gaubong.teddybearshop.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface ProductRepositoryCustom {
+
+    /**
+     * Conditionally take stock for several products in one JDBC batch:
+     * UPDATE products SET stock = stock - ? WHERE id = ? AND stock >= ?
+     * Reports the ids whose update matched no row (not enough stock or no such product)
+     * and the ids the driver returned no row count for (Statement.SUCCESS_NO_INFO), which
+     * the caller must verify before trusting them.
+     * Lines that did succeed stay applied; the caller's transaction decides what to keep.
+     */
+    StockUpdate decreaseStockIfAvailable(Map<Long, Integer> quantities);
+
+    /**
+     * Current stock by product id, read with plain JDBC so it bypasses the persistence context.
+     */
+    Map<Long, Integer> findStockByIds(Collection<Long> ids);
+
+    final class StockUpdate {
+        private final List<Long> shortIds;
+        private final List<Long> unverifiedIds;
+
+        public StockUpdate(List<Long> shortIds, List<Long> unverifiedIds) {
+            this.shortIds = shortIds;
+            this.unverifiedIds = unverifiedIds;
+        }
+
+        public List<Long> getShortIds() { return shortIds; }
+
+        public List<Long> getUnverifiedIds() { return unverifiedIds; }
+    }
+}
@@ -0,0 +1,61 @@
+package com.gaubong.teddybearshop.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class ProductRepositoryImpl implements ProductRepositoryCustom {
+
+    private static final String DECREASE_STOCK_SQL =
+            "UPDATE products SET stock = stock - ?, updated_at = NOW() WHERE id = ? AND stock >= ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public StockUpdate decreaseStockIfAvailable(Map<Long, Integer> quantities) {
+        List<Object[]> args = new ArrayList<>(quantities.size());
+        List<Long> ids = new ArrayList<>(quantities.size());
+        // Ascending id order, so concurrent checkouts lock rows in the same order and cannot deadlock
+        for (Map.Entry<Long, Integer> entry : new TreeMap<>(quantities).entrySet()) {
+            ids.add(entry.getKey());
+            args.add(new Object[]{entry.getValue(), entry.getKey(), entry.getValue()});
+        }
+
+        int[] counts = jdbcTemplate.batchUpdate(DECREASE_STOCK_SQL, args);
+
+        List<Long> shortIds = new ArrayList<>();
+        List<Long> unverifiedIds = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            // SUCCESS_NO_INFO (some rewritten batches) does not prove the row matched
+            if (counts[i] == Statement.SUCCESS_NO_INFO) {
+                unverifiedIds.add(ids.get(i));
+            } else if (counts[i] <= 0) {
+                shortIds.add(ids.get(i));
+            }
+        }
+        return new StockUpdate(shortIds, unverifiedIds);
+    }
+
+    @Override
+    public Map<Long, Integer> findStockByIds(Collection<Long> ids) {
+        Map<Long, Integer> stock = new HashMap<>();
+        if (ids.isEmpty()) {
+            return stock;
+        }
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        jdbcTemplate.query("SELECT id, stock FROM products WHERE id IN (" + placeholders + ")",
+                (RowCallbackHandler) rs -> stock.put(rs.getLong(1), rs.getInt(2)),
+                ids.toArray());
+        return stock;
+    }
+}
@@ -1,9 +1,17 @@
 package com.gaubong.teddybearshop.repository;
 
 import com.gaubong.teddybearshop.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -12,4 +20,24 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     Boolean existsByUsername(String username);
     Boolean existsByEmail(String email);
+
+    // (chatSummary, chatSummaryUntil) without loading the whole user
+    @Query("SELECT u.chatSummary, u.chatSummaryUntil FROM User u WHERE u.id = :id")
+    List<Object[]> findChatSummary(@Param("id") Long id);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.chatSummary = :summary, u.chatSummaryUntil = :until WHERE u.id = :id")
+    int updateChatSummary(@Param("id") Long id, @Param("summary") String summary, @Param("until") LocalDateTime until);
+
+    // Next ids after afterId whose chat summary only covers turns older than cutoff, for the retention job
+    @Query("SELECT u.id FROM User u WHERE u.id > :afterId AND u.chatSummaryUntil < :cutoff ORDER BY u.id")
+    List<Long> findIdsWithChatSummaryBefore(@Param("afterId") Long afterId, @Param("cutoff") LocalDateTime cutoff,
+                                            Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.chatSummary = NULL, u.chatSummaryUntil = NULL "
+            + "WHERE u.id IN :ids AND u.chatSummaryUntil < :cutoff")
+    int clearChatSummariesBefore(@Param("ids") Collection<Long> ids, @Param("cutoff") LocalDateTime cutoff);
 }
\ No newline at end of file
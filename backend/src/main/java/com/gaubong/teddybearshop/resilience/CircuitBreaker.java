@@ -0,0 +1,141 @@
+package com.gaubong.teddybearshop.resilience;
+
+/**
+ * Count-based sliding-window circuit breaker. Closed: the last windowSize calls
+ * are kept and the circuit opens once at least minimumCalls were recorded and
+ * the failure rate (slow calls count as failures) reaches the threshold.
+ * Open: calls are refused for openMillis. Half-open: up to halfOpenCalls trial
+ * calls are let through; all succeeding closes the circuit, any failure re-opens it.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openMillis;
+    private final int halfOpenCalls;
+
+    // Ring of the last windowSize outcomes, true = failure
+    private final boolean[] outcomes;
+    private int recorded = 0;
+    private int next = 0;
+    private int failures = 0;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int trialsStarted;
+    private int trialsSucceeded;
+
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+                          long openMillis, int halfOpenCalls) {
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openMillis = openMillis;
+        this.halfOpenCalls = halfOpenCalls;
+        this.outcomes = new boolean[windowSize];
+    }
+
+    /**
+     * True when a call may go ahead. Every permitted call must be followed by
+     * exactly one onSuccess, onFailure or onIgnored.
+     */
+    public synchronized boolean tryAcquirePermission(long nowMillis) {
+        if (state == State.OPEN) {
+            if (nowMillis - openedAt < openMillis) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialsStarted = 0;
+            trialsSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsStarted >= halfOpenCalls) {
+                return false;
+            }
+            trialsStarted++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.OPEN) {
+            // A call that started before the circuit opened
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            if (++trialsSucceeded >= halfOpenCalls) {
+                close();
+            }
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure(long nowMillis) {
+        if (state == State.OPEN) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            open(nowMillis);
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && recorded >= minimumCalls
+                && (double) failures / recorded >= failureRateThreshold) {
+            open(nowMillis);
+        }
+    }
+
+    // The call did not tell anything about the upstream's health (e.g. a rejected request)
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN && trialsStarted > 0) {
+            trialsStarted--;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Seconds until an open circuit lets a trial call through, at least 1.
+     */
+    public synchronized long secondsUntilRetry(long nowMillis) {
+        if (state != State.OPEN) {
+            return 1;
+        }
+        return Math.max(1, (openMillis - (nowMillis - openedAt) + 999) / 1000);
+    }
+
+    private void record(boolean failure) {
+        if (recorded == windowSize) {
+            if (outcomes[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % windowSize;
+    }
+
+    private void open(long nowMillis) {
+        state = State.OPEN;
+        openedAt = nowMillis;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        recorded = 0;
+        next = 0;
+        failures = 0;
+    }
+}
@@ -0,0 +1,24 @@
+package com.gaubong.teddybearshop.resilience;
+
+/**
+ * Thrown instead of calling an upstream whose circuit is open or whose bulkhead is full.
+ */
+public class DependencyUnavailableException extends RuntimeException {
+
+    private final String dependency;
+    private final long retryAfterSeconds;
+
+    public DependencyUnavailableException(String dependency, String reason, long retryAfterSeconds) {
+        super(dependency + " unavailable: " + reason);
+        this.dependency = dependency;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public String getDependency() {
+        return dependency;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
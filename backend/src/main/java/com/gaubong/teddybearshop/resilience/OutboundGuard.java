@@ -0,0 +1,159 @@
+package com.gaubong.teddybearshop.resilience;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * Bulkhead + circuit breaker for one outbound dependency. Timeouts belong to
+ * the dependency's HTTP client; a call slower than slowCallMillis counts as a
+ * failure even when it succeeds. Refused calls throw DependencyUnavailableException
+ * right away, which callers turn into their fallback.
+ *
+ * Metrics, tagged with the dependency name:
+ * resilience.calls{outcome=success|failure|slow|ignored|rejected|short_circuited},
+ * resilience.call.duration, resilience.circuit.state (0 closed, 1 open, 2 half-open)
+ * and resilience.bulkhead.in_use.
+ */
+public class OutboundGuard {
+
+    private final String name;
+    private final Bulkhead bulkhead;
+    private final CircuitBreaker circuitBreaker;
+    private final long slowCallNanos;
+    private final Predicate<Throwable> isFailure;
+    private final MeterRegistry meterRegistry;
+    private final Timer duration;
+
+    /**
+     * @param isFailure which errors count against the upstream; others (e.g. our own
+     *                  bad requests) are passed through without touching the circuit
+     */
+    public OutboundGuard(String name, Bulkhead bulkhead, CircuitBreaker circuitBreaker,
+                         long slowCallMillis, Predicate<Throwable> isFailure, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.bulkhead = bulkhead;
+        this.circuitBreaker = circuitBreaker;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+        this.isFailure = isFailure;
+        this.meterRegistry = meterRegistry;
+        this.duration = meterRegistry.timer("resilience.call.duration", "dependency", name);
+        Gauge.builder("resilience.circuit.state", circuitBreaker, cb -> cb.getState().ordinal())
+                .tag("dependency", name).register(meterRegistry);
+        Gauge.builder("resilience.bulkhead.in_use", bulkhead, Bulkhead::inUse)
+                .tag("dependency", name).register(meterRegistry);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public CircuitBreaker.State getState() {
+        return circuitBreaker.getState();
+    }
+
+    /**
+     * Run a blocking call under the guard.
+     */
+    public <T> T call(Callable<T> action) throws Exception {
+        Permit permit = acquire();
+        try {
+            T result = action.call();
+            permit.success();
+            return result;
+        } catch (Exception e) {
+            permit.failure(e);
+            throw e;
+        } catch (Error e) {
+            permit.failure(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Take a slot for a call that completes later (e.g. a stream). The caller must
+     * end the permit with success, failure or cancel; later calls are no-ops.
+     */
+    public Permit acquire() {
+        long now = System.currentTimeMillis();
+        if (!circuitBreaker.tryAcquirePermission(now)) {
+            count("short_circuited");
+            throw new DependencyUnavailableException(name, "circuit open", circuitBreaker.secondsUntilRetry(now));
+        }
+        if (!bulkhead.tryAcquire()) {
+            circuitBreaker.onIgnored();
+            count("rejected");
+            throw new DependencyUnavailableException(name, "too many concurrent calls", 1);
+        }
+        return new Permit(System.nanoTime());
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("resilience.calls", "dependency", name, "outcome", outcome).increment();
+    }
+
+    public final class Permit {
+        private final long start;
+        private final AtomicBoolean recorded = new AtomicBoolean();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(long start) {
+            this.start = start;
+        }
+
+        /**
+         * The upstream has started answering (first bytes of a stream): record the
+         * outcome now, measured to this point, but keep the slot until the call ends.
+         */
+        public void responded() {
+            if (recorded.compareAndSet(false, true)) {
+                if (System.nanoTime() - start > slowCallNanos) {
+                    circuitBreaker.onFailure(System.currentTimeMillis());
+                    count("slow");
+                } else {
+                    circuitBreaker.onSuccess();
+                    count("success");
+                }
+            }
+        }
+
+        public void success() {
+            responded();
+            release();
+        }
+
+        public void failure(Throwable error) {
+            if (recorded.compareAndSet(false, true)) {
+                if (isFailure.test(error)) {
+                    circuitBreaker.onFailure(System.currentTimeMillis());
+                    count("failure");
+                } else {
+                    circuitBreaker.onIgnored();
+                    count("ignored");
+                }
+            }
+            release();
+        }
+
+        // The caller gave up (e.g. the client disconnected): says nothing about the upstream
+        public void cancel() {
+            if (recorded.compareAndSet(false, true)) {
+                circuitBreaker.onIgnored();
+                count("ignored");
+            }
+            release();
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                bulkhead.release();
+                duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.gaubong.teddybearshop.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCrypt encoder whose cost is picked at startup from a target hash time.
+ * upgradeEncoding reports stored hashes with a lower cost, so
+ * DaoAuthenticationProvider rehashes them on the next successful login.
+ * Hashes with a higher cost are kept: a node that calibrates lower must not
+ * weaken them, nor rehash back and forth with nodes that calibrate higher.
+ */
+public class CalibratedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(CalibratedBCryptPasswordEncoder.class);
+
+    private static final Pattern BCRYPT_PATTERN = Pattern.compile("\\A\\$2(a|y|b)?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}");
+
+    private static final int BENCHMARK_ROUNDS = 3;
+
+    private final int cost;
+
+    public CalibratedBCryptPasswordEncoder(int cost) {
+        super(cost);
+        this.cost = cost;
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_PATTERN.matcher(encodedPassword);
+        return matcher.matches() && Integer.parseInt(matcher.group(2)) < cost;
+    }
+
+    /**
+     * Highest cost in [minCost, maxCost] whose hash takes no longer than targetMillis
+     * on this machine (never below minCost). Logs the measured single-threaded hash
+     * time for each cost tried; end-to-end login throughput is measured by
+     * LoginThroughputBenchmarkTest.
+     */
+    public static int calibrate(long targetMillis, int minCost, int maxCost) {
+        int chosen = minCost;
+        String salt = BCrypt.gensalt(minCost);
+        BCrypt.hashpw("warm-up", salt);
+
+        for (int candidate = minCost; candidate <= maxCost; candidate++) {
+            double millis = measure(candidate);
+            logger.info("BCrypt cost {}: {} ms per hash, ~{} hashes/s per core",
+                    candidate, String.format("%.1f", millis), String.format("%.1f", 1000.0 / millis));
+            if (millis > targetMillis && candidate > minCost) {
+                break;
+            }
+            chosen = candidate;
+            if (millis * 2 > targetMillis) {
+                // The next cost doubles the time and would overshoot
+                break;
+            }
+        }
+        logger.info("BCrypt cost {} selected for a {} ms target", chosen, targetMillis);
+        return chosen;
+    }
+
+    private static double measure(int cost) {
+        String salt = BCrypt.gensalt(cost);
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ROUNDS; i++) {
+            BCrypt.hashpw("benchmark-password", salt);
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / BENCHMARK_ROUNDS;
+    }
+}
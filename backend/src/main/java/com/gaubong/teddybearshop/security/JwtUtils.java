@@ -1,31 +1,69 @@
 package com.gaubong.teddybearshop.security;
 
+import com.gaubong.teddybearshop.entity.User;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SecurityException;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.function.Function;
 
 @Component
 public class JwtUtils {
 
+    private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
+
     @Value("${jwt.secret}")
     private String jwtSecret;
 
     @Value("${jwt.expiration}")
     private int jwtExpirationMs;
 
-    private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
+    // Carry user id and role as signed claims so the filter can skip the user lookup
+    @Value("${jwt.principal-claims:false}")
+    private boolean principalClaims;
+
+    // Recently verified tokens (by SHA-256 digest), kept until they expire
+    @Value("${jwt.verified-cache.max-size:10000}")
+    private int verifiedCacheMaxSize;
+
+    static final String CLAIM_USER_ID = "uid";
+    static final String CLAIM_ROLE = "role";
+
+    // Key and parser are immutable and thread-safe, build them once
+    private Key signingKey;
+    private JwtParser jwtParser;
+
+    private final Map<String, Claims> verified = new LinkedHashMap<>(256, 0.75f, true);
+
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        jwtParser = Jwts.parserBuilder().setSigningKey(signingKey).build();
     }
 
     public String generateJwtToken(UserDetails userPrincipal) {
+        if (principalClaims && userPrincipal instanceof User) {
+            User user = (User) userPrincipal;
+            Map<String, Object> claims = new HashMap<>();
+            claims.put(CLAIM_USER_ID, user.getId());
+            claims.put(CLAIM_ROLE, user.getRole().name());
+            return createToken(claims, user.getUsername());
+        }
         return generateTokenFromUsername(userPrincipal.getUsername());
     }
 
@@ -40,10 +78,34 @@ public class JwtUtils {
                 .setSubject(subject)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + jwtExpirationMs))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    /**
+     * Verify the token once and return its claims, or null when it is invalid or expired.
+     * Tokens verified before are answered from the cache without recomputing the HMAC.
+     * The returned claims are shared, treat them as read-only.
+     */
+    public Claims verify(String token) {
+        try {
+            return parseClaims(token);
+        } catch (ExpiredJwtException e) {
+            logger.debug("JWT token is expired: {}", e.getMessage());
+        } catch (MalformedJwtException e) {
+            logger.warn("Invalid JWT token: {}", e.getMessage());
+        } catch (SecurityException e) {
+            logger.warn("Invalid JWT signature: {}", e.getMessage());
+        } catch (UnsupportedJwtException e) {
+            logger.warn("JWT token is unsupported: {}", e.getMessage());
+        } catch (IllegalArgumentException e) {
+            logger.warn("JWT claims string is empty: {}", e.getMessage());
+        } catch (JwtException e) {
+            logger.warn("JWT token rejected: {}", e.getMessage());
+        }
+        return null;
+    }
+
     public String getUserNameFromJwtToken(String token) {
         return getClaimFromToken(token, Claims::getSubject);
     }
@@ -53,16 +115,57 @@ public class JwtUtils {
     }
 
     public <T> T getClaimFromToken(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = getAllClaimsFromToken(token);
+        final Claims claims = parseClaims(token);
         return claimsResolver.apply(claims);
     }
 
-    private Claims getAllClaimsFromToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    public boolean isPrincipalClaimsEnabled() {
+        return principalClaims;
+    }
+
+    /**
+     * Build the principal from the uid/role claims.
+     * Null when the token does not carry them (issued before the mode was enabled).
+     */
+    public User getPrincipalFromClaims(Claims claims) {
+        Number userId = claims.get(CLAIM_USER_ID, Number.class);
+        String role = claims.get(CLAIM_ROLE, String.class);
+        if (userId == null || role == null) {
+            return null;
+        }
+        User user = new User();
+        user.setId(userId.longValue());
+        user.setUsername(claims.getSubject());
+        user.setRole(User.Role.valueOf(role));
+        return user;
+    }
+
+    private Claims parseClaims(String token) {
+        if (token == null || token.isEmpty()) {
+            throw new IllegalArgumentException("JWT String argument cannot be null or empty.");
+        }
+        String digest = sha256(token);
+        long now = System.currentTimeMillis();
+        synchronized (verified) {
+            Claims cached = verified.get(digest);
+            if (cached != null) {
+                if (cached.getExpiration().getTime() > now) {
+                    return cached;
+                }
+                verified.remove(digest);
+            }
+        }
+
+        Claims claims = jwtParser.parseClaimsJws(token).getBody();
+        if (claims.getExpiration() != null) {
+            synchronized (verified) {
+                verified.put(digest, claims);
+                while (verified.size() > verifiedCacheMaxSize) {
+                    verified.remove(verified.keySet().iterator().next());
+                }
+            }
+        }
+        return claims;
     }
 
     private Boolean isTokenExpired(String token) {
@@ -71,23 +174,20 @@ public class JwtUtils {
     }
 
     public Boolean validateJwtToken(String authToken) {
-        try {
-            Jwts.parserBuilder().setSigningKey(getSigningKey()).build().parseClaimsJws(authToken);
-            return true;
-        } catch (MalformedJwtException e) {
-            System.err.println("Invalid JWT token: " + e.getMessage());
-        } catch (ExpiredJwtException e) {
-            System.err.println("JWT token is expired: " + e.getMessage());
-        } catch (UnsupportedJwtException e) {
-            System.err.println("JWT token is unsupported: " + e.getMessage());
-        } catch (IllegalArgumentException e) {
-            System.err.println("JWT claims string is empty: " + e.getMessage());
-        }
-        return false;
+        return verify(authToken) != null;
     }
 
     public Boolean validateToken(String token, UserDetails userDetails) {
         final String username = getUserNameFromJwtToken(token);
         return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
     }
-}
\ No newline at end of file
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.gaubong.teddybearshop.security;
+
+import com.gaubong.teddybearshop.entity.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, TTL-based cache of authenticated principals keyed by username,
+ * so a request with a JWT does not cost a users-table lookup every time.
+ * Entries expire after app.security.principal-cache.ttl-seconds and least
+ * recently used ones are evicted beyond max-size. UserService invalidates
+ * the entry whenever a user is updated or deleted.
+ * The password hash is not kept; callers get their own copy.
+ */
+@Component
+public class PrincipalCache {
+
+    @Autowired
+    private UserDetailsService userDetailsService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.security.principal-cache.max-size:10000}")
+    private int maxSize;
+
+    @Value("${app.security.principal-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    // Bumped on every invalidation; a load that raced with one is served but not cached
+    private long generation = 0;
+
+    private Counter hits;
+    private Counter misses;
+
+    @PostConstruct
+    public void registerMetrics() {
+        hits = meterRegistry.counter("principal.cache.requests", "result", "hit");
+        misses = meterRegistry.counter("principal.cache.requests", "result", "miss");
+        Gauge.builder("principal.cache.size", this, PrincipalCache::size).register(meterRegistry);
+    }
+
+    public UserDetails get(String username) {
+        long now = System.currentTimeMillis();
+        long startGeneration;
+        synchronized (entries) {
+            Entry entry = entries.get(username);
+            if (entry != null && entry.expiresAt > now) {
+                hits.increment();
+                return copyOf(entry.user);
+            }
+            if (entry != null) {
+                entries.remove(username);
+            }
+            startGeneration = generation;
+        }
+        misses.increment();
+
+        UserDetails loaded = userDetailsService.loadUserByUsername(username);
+        if (!(loaded instanceof User)) {
+            return loaded;
+        }
+        User user = copyOf((User) loaded);
+        synchronized (entries) {
+            if (generation == startGeneration) {
+                entries.put(username, new Entry(user, now + ttlSeconds * 1000));
+                while (entries.size() > maxSize) {
+                    entries.remove(entries.keySet().iterator().next());
+                }
+            }
+        }
+        return copyOf(user);
+    }
+
+    public void invalidate(String username) {
+        if (username == null) {
+            return;
+        }
+        synchronized (entries) {
+            generation++;
+            entries.remove(username);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    static User copyOf(User source) {
+        User copy = new User();
+        copy.setId(source.getId());
+        copy.setUsername(source.getUsername());
+        copy.setEmail(source.getEmail());
+        copy.setFullName(source.getFullName());
+        copy.setPhoneNumber(source.getPhoneNumber());
+        copy.setAddress(source.getAddress());
+        copy.setGoogleId(source.getGoogleId());
+        copy.setRole(source.getRole());
+        copy.setCreatedAt(source.getCreatedAt());
+        copy.setUpdatedAt(source.getUpdatedAt());
+        return copy;
+    }
+
+    private static final class Entry {
+        final User user;
+        final long expiresAt;
+
+        Entry(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
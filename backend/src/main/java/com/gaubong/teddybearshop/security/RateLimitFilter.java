@@ -0,0 +1,197 @@
+package com.gaubong.teddybearshop.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gaubong.teddybearshop.entity.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Token-bucket rate limiting for the expensive route families: /auth/**,
+ * /chatbot/chat(/stream), POST /orders and /payment/**. Runs after JwtAuthenticationFilter,
+ * so authenticated requests are limited per user and anonymous ones per client IP.
+ * Buckets live in one ConcurrentHashMap per family and lock only themselves;
+ * idle buckets are evicted on a timer. Rejections answer 429 with Retry-After.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.rate-limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.rate-limit.idle-eviction-seconds:600}")
+    private long idleEvictionSeconds;
+
+    @Value("${app.rate-limit.auth.capacity:10}")
+    private int authCapacity;
+
+    @Value("${app.rate-limit.auth.refill-per-minute:20}")
+    private double authRefillPerMinute;
+
+    @Value("${app.rate-limit.chatbot.capacity:5}")
+    private int chatbotCapacity;
+
+    @Value("${app.rate-limit.chatbot.refill-per-minute:10}")
+    private double chatbotRefillPerMinute;
+
+    @Value("${app.rate-limit.orders.capacity:5}")
+    private int ordersCapacity;
+
+    @Value("${app.rate-limit.orders.refill-per-minute:10}")
+    private double ordersRefillPerMinute;
+
+    @Value("${app.rate-limit.payment.capacity:10}")
+    private int paymentCapacity;
+
+    @Value("${app.rate-limit.payment.refill-per-minute:30}")
+    private double paymentRefillPerMinute;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private Family auth;
+    private Family chatbot;
+    private Family orders;
+    private Family payment;
+
+    @PostConstruct
+    public void init() {
+        auth = new Family("auth", authCapacity, authRefillPerMinute);
+        chatbot = new Family("chatbot", chatbotCapacity, chatbotRefillPerMinute);
+        orders = new Family("orders", ordersCapacity, ordersRefillPerMinute);
+        payment = new Family("payment", paymentCapacity, paymentRefillPerMinute);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Family family = enabled ? familyOf(request) : null;
+        if (family != null) {
+            long retryAfterSeconds = family.tryAcquire(clientKey(request), System.nanoTime());
+            if (retryAfterSeconds > 0) {
+                family.rejected.increment();
+                reject(request, response, retryAfterSeconds);
+                return;
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private Family familyOf(HttpServletRequest request) {
+        String path = request.getServletPath();
+        if (path.startsWith("/auth/")) {
+            return auth;
+        }
+        if (path.equals("/chatbot/chat") || path.equals("/chatbot/chat/stream")) {
+            return chatbot;
+        }
+        if (path.equals("/orders") && "POST".equals(request.getMethod())) {
+            return orders;
+        }
+        // The IPN callback comes from VNPay's servers, never throttle it
+        if (path.startsWith("/payment/") && !path.equals("/payment/vnpay/ipn")) {
+            return payment;
+        }
+        return null;
+    }
+
+    private static String clientKey(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof User) {
+            return "u:" + ((User) authentication.getPrincipal()).getId();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response,
+                        long retryAfterSeconds) throws IOException {
+        response.setStatus(429);
+        response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("status", 429);
+        body.put("error", "Too Many Requests");
+        body.put("message", "Too many requests, please retry in " + retryAfterSeconds + " seconds");
+        body.put("path", request.getServletPath());
+        objectMapper.writeValue(response.getOutputStream(), body);
+    }
+
+    @Scheduled(fixedDelayString = "${app.rate-limit.eviction-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        long cutoff = System.nanoTime() - idleEvictionSeconds * 1_000_000_000L;
+        for (Family family : new Family[] {auth, chatbot, orders, payment}) {
+            family.buckets.values().removeIf(bucket -> bucket.idleSince(cutoff));
+        }
+    }
+
+    private final class Family {
+        final double capacity;
+        final double tokensPerNano;
+        final Counter rejected;
+        final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+        Family(String name, int capacity, double refillPerMinute) {
+            this.capacity = capacity;
+            this.tokensPerNano = refillPerMinute / 60_000_000_000.0;
+            this.rejected = meterRegistry.counter("rate.limit.rejected", "family", name);
+            Gauge.builder("rate.limit.buckets", buckets, Map::size).tag("family", name).register(meterRegistry);
+        }
+
+        // 0 when a token was taken, otherwise the seconds until one is available
+        long tryAcquire(String key, long now) {
+            Bucket bucket = buckets.get(key);
+            if (bucket == null) {
+                bucket = buckets.computeIfAbsent(key, k -> new Bucket(capacity, now));
+            }
+            return bucket.tryAcquire(now, capacity, tokensPerNano);
+        }
+    }
+
+    static final class Bucket {
+        private double tokens;
+        private long lastRefill;
+
+        Bucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.lastRefill = now;
+        }
+
+        synchronized long tryAcquire(long now, double capacity, double tokensPerNano) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            if (tokensPerNano <= 0) {
+                return 60;
+            }
+            return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano / 1_000_000_000.0));
+        }
+
+        synchronized boolean idleSince(long cutoff) {
+            return lastRefill - cutoff < 0;
+        }
+    }
+}
@@ -1,18 +1,22 @@
 package com.gaubong.teddybearshop.service;
 
+import com.gaubong.teddybearshop.dto.CartItemView;
+import com.gaubong.teddybearshop.dto.CartView;
 import com.gaubong.teddybearshop.entity.Cart;
 import com.gaubong.teddybearshop.entity.CartItem;
 import com.gaubong.teddybearshop.entity.Product;
 import com.gaubong.teddybearshop.entity.User;
 import com.gaubong.teddybearshop.repository.CartRepository;
 import com.gaubong.teddybearshop.repository.CartItemRepository;
-import com.gaubong.teddybearshop.repository.ProductRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -27,11 +31,11 @@ public class CartService {
     private CartItemRepository cartItemRepository;
 
     @Autowired
-    private ProductRepository productRepository;
+    private ProductService productService;
 
     // Lấy hoặc tạo cart cho user
     public Cart getOrCreateCartForUser(User user) {
-        Optional<Cart> existingCart = cartRepository.findByUser(user);
+        Optional<Cart> existingCart = cartRepository.findWithItemsByUser(user);
         if (existingCart.isPresent()) {
             return existingCart.get();
         }
@@ -42,7 +46,7 @@ public class CartService {
 
     // Lấy hoặc tạo cart cho guest user
     public Cart getOrCreateCartForGuest(String sessionId) {
-        Optional<Cart> existingCart = cartRepository.findBySessionId(sessionId);
+        Optional<Cart> existingCart = cartRepository.findWithItemsBySessionId(sessionId);
         if (existingCart.isPresent() && !existingCart.get().isExpired()) {
             return existingCart.get();
         }
@@ -52,8 +56,11 @@ public class CartService {
     }
 
     // Thêm sản phẩm vào cart
+    // SUPPORTS: không mở transaction ghi riêng, để lần đọc sản phẩm đi qua ProductCache và được cache
+    // (ProductCache không cache lần đọc trong transaction read-write); lệnh ghi chạy trong transaction của repository
+    @Transactional(propagation = Propagation.SUPPORTS)
     public CartItem addToCart(Cart cart, Long productId, Integer quantity) {
-        Product product = productRepository.findById(productId)
+        Product product = productService.getProductById(productId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy sản phẩm"));
 
         // Kiểm tra stock - handle null case
@@ -62,7 +69,7 @@ public class CartService {
             throw new RuntimeException("Không đủ hàng trong kho");
         }
 
-        Optional<CartItem> existingItem = cartItemRepository.findByCartAndProduct(cart, product);
+        Optional<CartItem> existingItem = findItem(cart, productId);
         
         if (existingItem.isPresent()) {
             // Cập nhật quantity nếu item đã tồn tại
@@ -84,12 +91,13 @@ public class CartService {
         }
     }
 
-    // Cập nhật quantity của item trong cart
+    // Cập nhật quantity của item trong cart (SUPPORTS: như addToCart)
+    @Transactional(propagation = Propagation.SUPPORTS)
     public CartItem updateCartItemQuantity(Cart cart, Long productId, Integer quantity) {
-        Product product = productRepository.findById(productId)
+        Product product = productService.getProductById(productId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy sản phẩm"));
 
-        CartItem cartItem = cartItemRepository.findByCartAndProduct(cart, product)
+        CartItem cartItem = findItem(cart, productId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy sản phẩm trong giỏ hàng"));
 
         if (quantity <= 0) {
@@ -109,10 +117,7 @@ public class CartService {
 
     // Xóa sản phẩm khỏi cart
     public void removeFromCart(Cart cart, Long productId) {
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new RuntimeException("Không tìm thấy sản phẩm"));
-
-        CartItem cartItem = cartItemRepository.findByCartAndProduct(cart, product)
+        CartItem cartItem = findItem(cart, productId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy sản phẩm trong giỏ hàng"));
 
         cart.removeCartItem(cartItem);
@@ -128,18 +133,18 @@ public class CartService {
 
     // Lấy cart theo user ID
     public Optional<Cart> getCartByUserId(Long userId) {
-        return cartRepository.findByUserId(userId);
+        return cartRepository.findWithItemsByUserId(userId);
     }
 
     // Lấy cart theo session ID
     public Optional<Cart> getCartBySessionId(String sessionId) {
-        return cartRepository.findBySessionId(sessionId);
+        return cartRepository.findWithItemsBySessionId(sessionId);
     }
 
     // Chuyển đổi guest cart thành user cart khi login
     public Cart mergeGuestCartWithUserCart(String sessionId, User user) {
-        Optional<Cart> guestCart = cartRepository.findBySessionId(sessionId);
-        Optional<Cart> userCart = cartRepository.findByUser(user);
+        Optional<Cart> guestCart = cartRepository.findWithItemsBySessionId(sessionId);
+        Optional<Cart> userCart = cartRepository.findWithItemsByUser(user);
 
         if (!guestCart.isPresent()) {
             return getOrCreateCartForUser(user);
@@ -159,8 +164,7 @@ public class CartService {
         Cart sourceCart = guestCart.get();
 
         for (CartItem guestItem : sourceCart.getCartItems()) {
-            Optional<CartItem> existingItem = cartItemRepository
-                    .findByCartAndProduct(targetCart, guestItem.getProduct());
+            Optional<CartItem> existingItem = findItem(targetCart, guestItem.getProduct().getId());
 
             if (existingItem.isPresent()) {
                 // Cộng dồn quantity
@@ -201,19 +205,44 @@ public class CartService {
 
     // Kiểm tra xem product có trong cart không
     public boolean isProductInCart(Cart cart, Long productId) {
-        Product product = productRepository.findById(productId).orElse(null);
-        if (product == null) return false;
-        
-        return cartItemRepository.existsByCartAndProduct(cart, product);
+        return findItem(cart, productId).isPresent();
     }
 
     // Lấy quantity của product trong cart
     public int getProductQuantityInCart(Cart cart, Long productId) {
-        Product product = productRepository.findById(productId).orElse(null);
-        if (product == null) return 0;
-        
-        Optional<CartItem> cartItem = cartItemRepository.findByCartAndProduct(cart, product);
-        return cartItem.map(CartItem::getQuantity).orElse(0);
+        return findItem(cart, productId).map(CartItem::getQuantity).orElse(0);
+    }
+
+    // Chuyển cart sang view model cho response, tính tổng một lần
+    public CartView toView(Cart cart) {
+        List<CartItemView> items = new ArrayList<>(cart.getCartItems().size());
+        int totalItems = 0;
+        BigDecimal totalPrice = BigDecimal.ZERO;
+        for (CartItem item : cart.getCartItems()) {
+            CartItemView view = toItemView(item);
+            items.add(view);
+            totalItems += view.getQuantity();
+            totalPrice = totalPrice.add(view.getSubtotal());
+        }
+        return new CartView(cart.getId(), items, totalItems, totalPrice);
+    }
+
+    public CartItemView toItemView(CartItem item) {
+        if (item == null) {
+            return null;
+        }
+        Product product = item.getProduct();
+        BigDecimal unitPrice = product.getPrice();
+        return new CartItemView(item.getId(), product.getId(), product.getName(), product.getImageUrl(),
+                unitPrice, item.getQuantity(), unitPrice.multiply(BigDecimal.valueOf(item.getQuantity())),
+                product.getStock());
+    }
+
+    // Tìm item trong collection đã load sẵn (cart load bằng findWithItems...), không query thêm
+    private Optional<CartItem> findItem(Cart cart, Long productId) {
+        return cart.getCartItems().stream()
+                .filter(item -> item.getProduct().getId().equals(productId))
+                .findFirst();
     }
 
     // Scheduled task để xóa expired guest carts (chạy hàng ngày lúc 2:00 AM)
@@ -223,7 +252,7 @@ public class CartService {
         List<Cart> expiredCarts = cartRepository.findExpiredGuestCarts(now);
         
         for (Cart cart : expiredCarts) {
-            cartItemRepository.deleteByCart(cart);
+            cartItemRepository.bulkDeleteByCartId(cart.getId());
             cartRepository.delete(cart);
         }
     }
@@ -0,0 +1,244 @@
+package com.gaubong.teddybearshop.service;
+
+import com.gaubong.teddybearshop.repository.ChatMessageRepository;
+import com.gaubong.teddybearshop.util.VietnameseTextUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches chatbot answers to context-free questions (shipping fee, payment
+ * methods, return policy...) keyed by the normalized question: lower-cased,
+ * diacritics folded, punctuation and whitespace collapsed.
+ * Questions that refer back to the conversation, carry numbers or are long
+ * are never cached. A question only gets a key once it is frequent: asked at
+ * least warm-min-count times, counted here and seeded from chat_messages at
+ * startup. Everything else keeps the user's history in the prompt.
+ * Cached answers must come from a context-free prompt (ChatbotService sends
+ * cacheable questions without history), otherwise one user's conversation
+ * would leak to others. LRU + TTL; warmed at startup from the most frequent
+ * questions in chat_messages, using only shareable answers.
+ */
+@Component
+public class ChatFaqCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatFaqCache.class);
+
+    // Folded words that point back at earlier messages ("nó", "đó", "này", "vậy", "thế", "kia", "trên"...)
+    private static final Set<String> CONTEXT_WORDS = Set.of(
+            "no", "do", "nay", "vay", "the", "kia", "tren", "truoc", "cai", "con", "it", "that", "this");
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ChatIntentRouter intentRouter;
+
+    @Value("${chatbot.faq-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chatbot.faq-cache.max-size:500}")
+    private int maxSize;
+
+    @Value("${chatbot.faq-cache.ttl-minutes:360}")
+    private long ttlMinutes;
+
+    @Value("${chatbot.faq-cache.max-words:12}")
+    private int maxWords;
+
+    @Value("${chatbot.faq-cache.warm-size:50}")
+    private int warmSize;
+
+    @Value("${chatbot.faq-cache.warm-min-count:3}")
+    private int warmMinCount;
+
+    @Value("${chatbot.faq-cache.warm-days:30}")
+    private int warmDays;
+
+    @Value("${chatbot.faq-cache.tracked-size:5000}")
+    private int trackedSize;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(128, 0.75f, true);
+
+    // Times each candidate question was asked (capped at warmMinCount), least recently asked evicted first
+    private final Map<String, Integer> askedCounts = new LinkedHashMap<>(256, 0.75f, true);
+
+    private Counter hits;
+    private Counter misses;
+    private Counter savedSeconds;
+    private Timer upstreamLatency;
+
+    @PostConstruct
+    public void registerMetrics() {
+        hits = meterRegistry.counter("chatbot.faq.requests", "result", "hit");
+        misses = meterRegistry.counter("chatbot.faq.requests", "result", "miss");
+        // Each hit saves roughly one average model call for a cacheable question
+        savedSeconds = meterRegistry.counter("chatbot.faq.saved.seconds");
+        upstreamLatency = meterRegistry.timer("chatbot.faq.upstream.latency");
+        Gauge.builder("chatbot.faq.size", this, ChatFaqCache::size).register(meterRegistry);
+    }
+
+    /**
+     * Normalized cache key, or null when the question should not be cached.
+     * Counts the question as asked; it gets a key only once it is frequent.
+     */
+    public String keyFor(String message) {
+        String key = candidateKey(message);
+        if (key == null) {
+            return null;
+        }
+        return countAsked(key, 1) >= warmMinCount ? key : null;
+    }
+
+    // Normalized question when it could be cached at all: short, no numbers, no reference to the conversation
+    private String candidateKey(String message) {
+        if (!enabled) {
+            return null;
+        }
+        List<String> tokens = VietnameseTextUtil.tokenize(message);
+        if (tokens.isEmpty() || tokens.size() > maxWords) {
+            return null;
+        }
+        for (String token : tokens) {
+            if (CONTEXT_WORDS.contains(token) || token.chars().anyMatch(Character::isDigit)) {
+                return null;
+            }
+        }
+        return String.join(" ", tokens);
+    }
+
+    public Optional<String> get(String key) {
+        if (key == null) {
+            return Optional.empty();
+        }
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+                hits.increment();
+                savedSeconds.increment(upstreamLatency.mean(TimeUnit.SECONDS));
+                return Optional.of(entry.answer);
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Store a fresh model answer; upstreamNanos is how long the model call took.
+     */
+    public void put(String key, String answer, long upstreamNanos) {
+        if (key == null || answer == null || answer.isEmpty()) {
+            return;
+        }
+        if (upstreamNanos > 0) {
+            upstreamLatency.record(upstreamNanos, TimeUnit.NANOSECONDS);
+        }
+        synchronized (entries) {
+            entries.put(key, new Entry(answer, System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(ttlMinutes)));
+            while (entries.size() > maxSize) {
+                entries.remove(entries.keySet().iterator().next());
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private int countAsked(String key, int times) {
+        synchronized (askedCounts) {
+            int count = askedCounts.merge(key, times, (a, b) -> Math.min(a + b, warmMinCount));
+            while (askedCounts.size() > trackedSize) {
+                askedCounts.remove(askedCounts.keySet().iterator().next());
+            }
+            return count;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            List<Object[]> frequent = chatMessageRepository.findFrequentQuestions(
+                    LocalDateTime.now().minusDays(warmDays), PageRequest.of(0, warmSize * 4));
+
+            // Different spellings of the same question share one key: add up their counts
+            Map<String, Long> countByKey = new HashMap<>();
+            Map<String, String> questionByKey = new HashMap<>();
+            for (Object[] row : frequent) {
+                String question = (String) row[0];
+                String key = candidateKey(question);
+                // Routed questions are answered locally (and order answers are per user), never warm them
+                if (key != null && intentRouter.classify(question).isEmpty()) {
+                    countByKey.merge(key, ((Number) row[1]).longValue(), Long::sum);
+                    // Rows come most frequent first, keep the most common spelling
+                    questionByKey.putIfAbsent(key, question);
+                }
+            }
+
+            List<String> keys = new ArrayList<>(countByKey.keySet());
+            keys.sort(Comparator.comparing(countByKey::get).reversed());
+            // Questions already frequent in the history are frequent from the start
+            for (String key : keys) {
+                countAsked(key, (int) Math.min(countByKey.get(key), warmMinCount));
+            }
+            int warmed = 0;
+            for (String key : keys) {
+                if (warmed >= warmSize || countByKey.get(key) < warmMinCount) {
+                    break;
+                }
+                Optional<String> answer = chatMessageRepository
+                        .findFirstByUserMessageAndShareableTrueOrderByCreatedAtDesc(questionByKey.get(key))
+                        .map(message -> message.getBotResponse());
+                if (answer.isPresent()) {
+                    put(key, answer.get(), 0);
+                    warmed++;
+                }
+            }
+            logger.info("Chatbot FAQ cache warmed with {} answers", warmed);
+        } catch (Exception e) {
+            logger.warn("Cannot warm chatbot FAQ cache: {}", e.getMessage());
+        }
+    }
+
+    private static final class Entry {
+        final String answer;
+        final long expiresAt;
+
+        Entry(String answer, long expiresAt) {
+            this.answer = answer;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
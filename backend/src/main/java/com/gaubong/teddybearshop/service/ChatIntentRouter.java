@@ -0,0 +1,242 @@
+package com.gaubong.teddybearshop.service;
+
+import com.gaubong.teddybearshop.entity.Order;
+import com.gaubong.teddybearshop.entity.User;
+import com.gaubong.teddybearshop.util.VietnameseTextUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.text.NumberFormat;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Answers order-status, shipping-fee and payment-method questions straight from
+ * our own data, without calling the model. Messages are diacritic-folded and
+ * scored against weighted unigrams/bigrams/trigrams per intent; the best intent
+ * wins only with a minimum score and a clear margin over the runner-up,
+ * otherwise the question falls through to the LLM.
+ */
+@Component
+public class ChatIntentRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatIntentRouter.class);
+
+    public enum Intent {
+        ORDER_STATUS, SHIPPING_FEE, PAYMENT_METHODS
+    }
+
+    private static final int RECENT_ORDERS = 3;
+
+    // "#123", "đơn 123", "đơn hàng số 123", "order 123"
+    private static final Pattern ORDER_ID = Pattern.compile(
+            "(?:#|\\b(?:đơn|don|order)\\s*(?:hàng|hang)?\\s*(?:số|so)?\\s*#?)\\s*(\\d{1,10})\\b",
+            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    // Folded n-grams and their weights
+    private static final Map<Intent, Map<String, Double>> NGRAMS = new EnumMap<>(Intent.class);
+
+    static {
+        NGRAMS.put(Intent.ORDER_STATUS, Map.ofEntries(
+                Map.entry("don hang", 1.5), Map.entry("order", 1.0),
+                Map.entry("my order", 1.5), Map.entry("order status", 2.0),
+                Map.entry("tinh trang", 1.0), Map.entry("trang thai", 1.0),
+                Map.entry("o dau", 1.0), Map.entry("den dau", 1.0), Map.entry("toi dau", 1.0),
+                Map.entry("giao chua", 1.5), Map.entry("nhan duoc", 0.5), Map.entry("theo doi", 1.0),
+                Map.entry("kiem tra don", 1.0), Map.entry("bao gio", 0.5), Map.entry("khi nao", 0.5)));
+        NGRAMS.put(Intent.SHIPPING_FEE, Map.ofEntries(
+                Map.entry("phi ship", 2.5), Map.entry("tien ship", 2.5), Map.entry("phi giao", 1.5),
+                Map.entry("phi giao hang", 1.0), Map.entry("phi van chuyen", 2.5), Map.entry("van chuyen", 1.0),
+                Map.entry("ship", 1.0), Map.entry("freeship", 2.5), Map.entry("mien phi ship", 1.5),
+                Map.entry("mien phi giao", 1.5), Map.entry("shipping", 1.5), Map.entry("shipping fee", 1.5),
+                Map.entry("giao nhanh", 1.0), Map.entry("phi", 0.5), Map.entry("bao nhieu", 0.5)));
+        NGRAMS.put(Intent.PAYMENT_METHODS, Map.ofEntries(
+                Map.entry("thanh toan", 1.5), Map.entry("cach thanh toan", 1.0), Map.entry("thanh toan bang", 1.0),
+                Map.entry("hinh thuc thanh toan", 1.0), Map.entry("phuong thuc thanh toan", 1.0),
+                Map.entry("cod", 1.5), Map.entry("vnpay", 1.5), Map.entry("chuyen khoan", 1.5),
+                Map.entry("tra tien", 1.0), Map.entry("visa", 1.0), Map.entry("atm", 1.0),
+                Map.entry("payment", 1.5), Map.entry("pay", 1.0)));
+    }
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private PaymentMethodService paymentMethodService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${chatbot.intent.enabled:true}")
+    private boolean enabled;
+
+    // Best intent must reach this score and beat the runner-up by the margin
+    @Value("${chatbot.intent.min-score:2.0}")
+    private double minScore;
+
+    @Value("${chatbot.intent.min-margin:1.0}")
+    private double minMargin;
+
+    @Value("${shipping.default-fee:30000}")
+    private BigDecimal defaultShippingFee;
+
+    @Value("${shipping.express-fee:50000}")
+    private BigDecimal expressShippingFee;
+
+    @Value("${shipping.free-shipping-threshold:500000}")
+    private BigDecimal freeShippingThreshold;
+
+    /**
+     * Intent the message clearly belongs to, or empty when unsure.
+     */
+    public Optional<Intent> classify(String message) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        List<String> tokens = VietnameseTextUtil.tokenize(message);
+        if (tokens.isEmpty()) {
+            return Optional.empty();
+        }
+        List<String> ngrams = new ArrayList<>(tokens.size() * 3);
+        for (int i = 0; i < tokens.size(); i++) {
+            ngrams.add(tokens.get(i));
+            if (i + 1 < tokens.size()) {
+                ngrams.add(tokens.get(i) + " " + tokens.get(i + 1));
+            }
+            if (i + 2 < tokens.size()) {
+                ngrams.add(tokens.get(i) + " " + tokens.get(i + 1) + " " + tokens.get(i + 2));
+            }
+        }
+
+        Intent best = null;
+        double bestScore = 0;
+        double secondScore = 0;
+        for (Map.Entry<Intent, Map<String, Double>> intent : NGRAMS.entrySet()) {
+            double score = 0;
+            for (String ngram : ngrams) {
+                score += intent.getValue().getOrDefault(ngram, 0.0);
+            }
+            if (score > bestScore) {
+                secondScore = bestScore;
+                bestScore = score;
+                best = intent.getKey();
+            } else if (score > secondScore) {
+                secondScore = score;
+            }
+        }
+        if (best == null || bestScore < minScore || bestScore - secondScore < minMargin) {
+            return Optional.empty();
+        }
+        return Optional.of(best);
+    }
+
+    /**
+     * Local answer for the message, or empty to let the LLM handle it.
+     */
+    public Optional<String> answer(String message, User user) {
+        Optional<Intent> intent = classify(message);
+        meterRegistry.counter("chatbot.intent.requests", "intent",
+                intent.map(Enum::name).orElse("NONE")).increment();
+        if (intent.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            switch (intent.get()) {
+                case ORDER_STATUS:
+                    return Optional.of(orderStatusAnswer(message, user));
+                case SHIPPING_FEE:
+                    return Optional.of(shippingFeeAnswer());
+                case PAYMENT_METHODS:
+                    return Optional.of(paymentMethodsAnswer());
+                default:
+                    return Optional.empty();
+            }
+        } catch (Exception e) {
+            // Let the model answer rather than failing the chat
+            logger.warn("Cannot answer intent {} locally: {}", intent.get(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private String orderStatusAnswer(String message, User user) {
+        if (user == null) {
+            return "Bạn vui lòng đăng nhập để mình kiểm tra tình trạng đơn hàng nhé.";
+        }
+
+        Matcher matcher = ORDER_ID.matcher(message);
+        if (matcher.find()) {
+            Long orderId = Long.valueOf(matcher.group(1));
+            Optional<Order> order = orderService.getOrderById(orderId)
+                    .filter(o -> o.getUser().getId().equals(user.getId()));
+            return order.map(o -> "Đơn hàng " + describe(o) + ".")
+                    .orElse("Mình không tìm thấy đơn hàng #" + orderId + " trong tài khoản của bạn.");
+        }
+
+        List<Order> recent = orderService.getOrdersByUserAfter(user.getId(), null, RECENT_ORDERS).getContent();
+        if (recent.isEmpty()) {
+            return "Bạn chưa có đơn hàng nào tại Shop Gấu Bông.";
+        }
+        StringBuilder answer = new StringBuilder("Các đơn hàng gần đây của bạn:");
+        for (Order order : recent) {
+            answer.append("\n- ").append(describe(order));
+        }
+        return answer.toString();
+    }
+
+    private String shippingFeeAnswer() {
+        return "Phí giao hàng tiêu chuẩn là " + money(defaultShippingFee)
+                + ", giao nhanh là " + money(expressShippingFee)
+                + ". Đơn hàng từ " + money(freeShippingThreshold) + " trở lên được miễn phí giao hàng.";
+    }
+
+    @SuppressWarnings("unchecked")
+    private String paymentMethodsAnswer() {
+        StringBuilder answer = new StringBuilder("Shop hỗ trợ các hình thức thanh toán:");
+        for (Object method : paymentMethodService.getPaymentMethods().values()) {
+            Map<String, Object> details = (Map<String, Object>) method;
+            if (Boolean.TRUE.equals(details.get("enabled"))) {
+                answer.append("\n- ").append(details.get("name")).append(": ").append(details.get("description"));
+            }
+        }
+        return answer.toString();
+    }
+
+    private static String describe(Order order) {
+        return "#" + order.getId()
+                + (order.getCreatedAt() != null ? " (đặt ngày " + order.getCreatedAt().format(DATE_FORMAT) + ")" : "")
+                + ": " + statusLabel(order.getStatus())
+                + ", tổng " + money(order.getTotalAmount());
+    }
+
+    private static String statusLabel(Order.OrderStatus status) {
+        if (status == null) {
+            return "đang cập nhật";
+        }
+        switch (status) {
+            case PENDING: return "đang chờ xác nhận";
+            case CONFIRMED: return "đã xác nhận";
+            case PROCESSING: return "đang chuẩn bị hàng";
+            case SHIPPED: return "đang giao hàng";
+            case DELIVERED: return "đã giao thành công";
+            case CANCELLED: return "đã hủy";
+            default: return status.name();
+        }
+    }
+
+    private static String money(BigDecimal amount) {
+        return NumberFormat.getIntegerInstance(new Locale("vi", "VN")).format(amount) + "đ";
+    }
+}
@@ -0,0 +1,329 @@
+package com.gaubong.teddybearshop.service;
+
+import com.gaubong.teddybearshop.entity.ChatMessage;
+import com.gaubong.teddybearshop.entity.User;
+import com.gaubong.teddybearshop.repository.ChatMessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Write-behind buffer for chat messages. Exchanges are queued and inserted in
+ * JDBC batches when batch-size messages are waiting or every flush-interval-ms,
+ * whichever comes first; the queue is drained on graceful shutdown, and
+ * exchanges finishing after that are inserted on the caller's thread.
+ * Also keeps each active user's last exchanges in memory, so building the
+ * prompt context does not query chat_messages, and the exchanges pushed out
+ * of that window until ConversationMemory has summarized them.
+ */
+@Component
+public class ChatMessageBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatMessageBuffer.class);
+
+    public static final int RECENT_EXCHANGES = 10;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${chatbot.persistence.batch-size:50}")
+    private int batchSize;
+
+    @Value("${chatbot.persistence.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    @Value("${chatbot.persistence.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${chatbot.persistence.history-users:10000}")
+    private int historyUsers;
+
+    private BlockingQueue<ChatMessage> queue;
+    private ScheduledExecutorService flusher;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    // Set when shutdown begins; from then on add() writes through instead of queueing behind
+    private volatile boolean stopping = false;
+
+    // Held while a batch is in flight, so history loads and deletes see it either queued or stored
+    private final Object flushLock = new Object();
+
+    // Last exchanges per user id, oldest first; LRU over users
+    private final Map<Long, Deque<ChatTurn>> recentByUser = new LinkedHashMap<>(256, 0.75f, true);
+
+    // Exchanges pushed out of a user's recent window and not summarized yet, oldest first;
+    // guarded by recentByUser and dropped with it
+    private final Map<Long, Deque<ChatTurn>> droppedByUser = new HashMap<>();
+
+    private Counter flushed;
+    private Counter failed;
+    private Timer flushTimer;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        flushed = meterRegistry.counter("chatbot.messages.flushed");
+        failed = meterRegistry.counter("chatbot.messages.flush.failed");
+        flushTimer = meterRegistry.timer("chatbot.messages.flush");
+        Gauge.builder("chatbot.messages.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        stopping = true;
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        flushSafely();
+        if (!queue.isEmpty()) {
+            logger.error("{} chat messages could not be saved on shutdown", queue.size());
+        }
+    }
+
+    /**
+     * Queue one exchange for insertion. Blocks only when the queue is full, after
+     * trying to flush on the caller's thread. shareable marks answers generated
+     * without any user context, see ChatMessage.
+     */
+    public void add(User user, String userMessage, String botResponse, boolean shareable) {
+        ChatMessage message = new ChatMessage(user, userMessage, botResponse);
+        message.setShareable(shareable);
+        message.setCreatedAt(LocalDateTime.now());
+
+        // Same lock as a history load, so the message lands in exactly one of queue scan or ring
+        boolean queued;
+        synchronized (recentByUser) {
+            queued = queue.offer(message);
+            Deque<ChatTurn> recent = recentByUser.get(user.getId());
+            if (queued && recent != null) {
+                ChatTurn dropped = append(recent, turnOf(message));
+                if (dropped != null) {
+                    append(droppedByUser.computeIfAbsent(user.getId(), id -> new ArrayDeque<>()), dropped);
+                }
+            }
+        }
+        if (!queued) {
+            flushSafely();
+            try {
+                queue.put(message);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while queueing chat message", e);
+            }
+            synchronized (recentByUser) {
+                recentByUser.remove(user.getId());
+                droppedByUser.remove(user.getId());
+            }
+        }
+        // Checked after queueing: either stop() drains this message or we flush it here
+        if (stopping) {
+            flushSafely();
+            return;
+        }
+        if (queue.size() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(() -> {
+                    flushRequested.set(false);
+                    flushSafely();
+                });
+            } catch (RejectedExecutionException e) {
+                // Shutdown began after the check above
+                flushRequested.set(false);
+                flushSafely();
+            }
+        }
+    }
+
+    /**
+     * The user's last exchanges as prompt-ready turns, oldest first. Loaded from the database once per
+     * user (plus anything still queued), then kept up to date in memory.
+     */
+    public List<ChatTurn> recent(User user) {
+        synchronized (recentByUser) {
+            Deque<ChatTurn> recent = recentByUser.get(user.getId());
+            if (recent != null) {
+                return new ArrayList<>(recent);
+            }
+        }
+
+        Deque<ChatTurn> loaded = new ArrayDeque<>(RECENT_EXCHANGES);
+        synchronized (flushLock) {
+            List<ChatMessage> stored = chatMessageRepository.findTop10ByUserOrderByCreatedAtDesc(user);
+            for (int i = stored.size() - 1; i >= 0; i--) {
+                append(loaded, turnOf(stored.get(i)));
+            }
+            synchronized (recentByUser) {
+                for (ChatMessage queued : queue) {
+                    if (queued.getUser().getId().equals(user.getId())) {
+                        append(loaded, turnOf(queued));
+                    }
+                }
+                recentByUser.put(user.getId(), loaded);
+                while (recentByUser.size() > historyUsers) {
+                    Long eldest = recentByUser.keySet().iterator().next();
+                    recentByUser.remove(eldest);
+                    droppedByUser.remove(eldest);
+                }
+                return new ArrayList<>(loaded);
+            }
+        }
+    }
+
+    /**
+     * Exchanges that left the user's recent window and are not summarized yet, oldest first.
+     * At most RECENT_EXCHANGES are kept when summaries fall behind.
+     */
+    public List<ChatTurn> dropped(User user) {
+        synchronized (recentByUser) {
+            Deque<ChatTurn> dropped = droppedByUser.get(user.getId());
+            return dropped != null ? new ArrayList<>(dropped) : List.of();
+        }
+    }
+
+    /**
+     * Forget dropped exchanges created up to until, now that a summary covers them.
+     */
+    public void summarized(Long userId, LocalDateTime until) {
+        synchronized (recentByUser) {
+            Deque<ChatTurn> dropped = droppedByUser.get(userId);
+            if (dropped == null) {
+                return;
+            }
+            dropped.removeIf(turn -> !turn.getCreatedAt().isAfter(until));
+            if (dropped.isEmpty()) {
+                droppedByUser.remove(userId);
+            }
+        }
+    }
+
+    /**
+     * Write the user's queued messages now, so a history read sees them.
+     */
+    public void flushPending(User user) {
+        for (ChatMessage queued : queue) {
+            if (queued.getUser().getId().equals(user.getId())) {
+                flush();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Drop the user's queued and remembered messages, then run deleteStored.
+     * Both happen under the flush lock, so no batch of theirs can land afterwards.
+     */
+    public void clear(User user, Runnable deleteStored) {
+        synchronized (flushLock) {
+            queue.removeIf(queued -> queued.getUser().getId().equals(user.getId()));
+            synchronized (recentByUser) {
+                recentByUser.remove(user.getId());
+                droppedByUser.remove(user.getId());
+            }
+            deleteStored.run();
+        }
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    public void flush() {
+        synchronized (flushLock) {
+            List<ChatMessage> batch = new ArrayList<>(batchSize);
+            while (queue.drainTo(batch, batchSize) > 0) {
+                long start = System.nanoTime();
+                try {
+                    insert(batch);
+                } catch (RuntimeException e) {
+                    failed.increment(batch.size());
+                    // Database unavailable: put the batch back for the next attempt,
+                    // createdAt keeps the original order
+                    for (ChatMessage message : batch) {
+                        if (!queue.offer(message)) {
+                            logger.error("Chat message dropped, queue full: user {}", message.getUser().getId());
+                        }
+                    }
+                    throw e;
+                } finally {
+                    flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private void insert(List<ChatMessage> batch) {
+        try {
+            chatMessageRepository.insertBatch(batch);
+            flushed.increment(batch.size());
+        } catch (DataIntegrityViolationException e) {
+            // One bad row (e.g. the user was deleted meanwhile) must not block the rest
+            for (ChatMessage message : batch) {
+                try {
+                    chatMessageRepository.insertBatch(List.of(message));
+                    flushed.increment();
+                } catch (DataIntegrityViolationException rowError) {
+                    failed.increment();
+                    logger.warn("Chat message dropped for user {}: {}",
+                            message.getUser().getId(), rowError.getMessage());
+                }
+            }
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("Cannot save chat messages, {} queued: {}", queue.size(), e.getMessage());
+        }
+    }
+
+    // Returns the turn pushed out by this one, if any
+    private static ChatTurn append(Deque<ChatTurn> recent, ChatTurn turn) {
+        recent.addLast(turn);
+        ChatTurn removed = null;
+        while (recent.size() > RECENT_EXCHANGES) {
+            removed = recent.removeFirst();
+        }
+        return removed;
+    }
+
+    private static ChatTurn turnOf(ChatMessage message) {
+        return new ChatTurn(message.getUserMessage(), message.getBotResponse(), message.getCreatedAt());
+    }
+}
@@ -0,0 +1,99 @@
+package com.gaubong.teddybearshop.service;
+
+import com.gaubong.teddybearshop.entity.Product;
+import com.gaubong.teddybearshop.util.VietnameseTextUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.text.NumberFormat;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Grounds chatbot prompts in the real catalog: the products that best match the
+ * user's message (BM25 over ProductSearchIndex, so the chat path never queries
+ * MySQL) are rendered with their current price and stock, one line each, until
+ * the token budget is spent.
+ */
+@Component
+public class ChatProductRetriever {
+
+    private static final String HEADER =
+        "Sản phẩm của shop liên quan đến câu hỏi (giá và tồn kho hiện tại; " +
+        "chỉ báo giá, tồn kho theo danh sách này, không tự đặt ra sản phẩm khác):";
+
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${chatbot.retrieval.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chatbot.retrieval.top-k:5}")
+    private int topK;
+
+    @Value("${chatbot.retrieval.min-score:0.5}")
+    private double minScore;
+
+    // Rough budget for the whole product block, see VietnameseTextUtil.estimateTokens
+    @Value("${chatbot.retrieval.max-tokens:400}")
+    private int maxTokens;
+
+    /**
+     * System prompt block listing the matching products, or null when nothing relevant was found.
+     */
+    public String productContext(String userMessage) {
+        if (!enabled) {
+            return null;
+        }
+        List<Product> products = productSearchIndex.match(userMessage, topK, minScore);
+        meterRegistry.counter("chatbot.retrieval.requests", "result", products.isEmpty() ? "miss" : "hit").increment();
+        if (products.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder context = new StringBuilder(HEADER);
+        int budget = maxTokens - VietnameseTextUtil.estimateTokens(HEADER);
+        int included = 0;
+        for (Product product : products) {
+            String line = "\n- " + describe(product);
+            int cost = VietnameseTextUtil.estimateTokens(line);
+            if (cost > budget) {
+                break;
+            }
+            context.append(line);
+            budget -= cost;
+            included++;
+        }
+        meterRegistry.summary("chatbot.retrieval.products").record(included);
+        return included > 0 ? context.toString() : null;
+    }
+
+    private static String describe(Product product) {
+        StringBuilder line = new StringBuilder(product.getName());
+        if (product.getPrice() != null) {
+            line.append(" | giá ").append(money(product.getPrice()));
+        }
+        int stock = product.getStock() != null ? product.getStock() : 0;
+        line.append(stock > 0 ? " | còn " + stock + " sản phẩm" : " | hết hàng");
+        appendField(line, "kích thước", product.getSize());
+        appendField(line, "chất liệu", product.getMaterial());
+        appendField(line, "màu", product.getColor());
+        return line.toString();
+    }
+
+    private static void appendField(StringBuilder line, String label, String value) {
+        if (value != null && !value.isBlank()) {
+            line.append(" | ").append(label).append(' ').append(value.trim());
+        }
+    }
+
+    private static String money(BigDecimal amount) {
+        return NumberFormat.getIntegerInstance(new Locale("vi", "VN")).format(amount) + "đ";
+    }
+}
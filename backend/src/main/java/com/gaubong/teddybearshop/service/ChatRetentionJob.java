@@ -0,0 +1,149 @@
+package com.gaubong.teddybearshop.service;
+
+import com.gaubong.teddybearshop.repository.ChatMessageRepository;
+import com.gaubong.teddybearshop.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Purges chat messages older than chatbot.retention.max-age-days. Rows are
+ * deleted in primary-key ranges of chunk-size ids, each range in its own short
+ * transaction, with a pause in between so the job never holds locks for long
+ * or starves the chat path of connections. Chat summaries that only cover
+ * purged turns are cleared the same way, in chunks of users, and dropped
+ * from ConversationMemory's cache.
+ */
+@Component
+public class ChatRetentionJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatRetentionJob.class);
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ConversationMemory conversationMemory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${chatbot.retention.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chatbot.retention.max-age-days:180}")
+    private int maxAgeDays;
+
+    @Value("${chatbot.retention.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${chatbot.retention.pause-ms:50}")
+    private long pauseMs;
+
+    private Counter deletedRows;
+    private Counter clearedSummaries;
+
+    // Throughput of the last run, for alerting on a slow purge
+    private final AtomicLong lastRowsPerSecond = new AtomicLong();
+
+    @PostConstruct
+    public void registerMetrics() {
+        deletedRows = meterRegistry.counter("chat.retention.deleted");
+        clearedSummaries = meterRegistry.counter("chat.retention.summaries.cleared");
+        Gauge.builder("chat.retention.rows_per_second", lastRowsPerSecond, AtomicLong::get).register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${chatbot.retention.cron:0 0 4 * * ?}")
+    public void purgeExpiredMessages() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(maxAgeDays);
+        purgeMessages(cutoff);
+        purgeSummaries(cutoff);
+    }
+
+    private void purgeMessages(LocalDateTime cutoff) {
+        Long fromId = chatMessageRepository.findMinId();
+        Long lastExpiredId = chatMessageRepository.findMaxIdCreatedBefore(cutoff);
+        if (fromId == null || lastExpiredId == null) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        long deleted = 0;
+        int chunks = 0;
+        try {
+            while (fromId <= lastExpiredId) {
+                long toId = Math.min(fromId + chunkSize, lastExpiredId + 1);
+                int count = chatMessageRepository.deleteExpiredInRange(fromId, toId, cutoff);
+                deleted += count;
+                deletedRows.increment(count);
+                chunks++;
+                fromId = toId;
+                if (pauseMs > 0 && fromId <= lastExpiredId) {
+                    Thread.sleep(pauseMs);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Chat retention interrupted after {} rows", deleted);
+        } catch (Exception e) {
+            // Next run resumes from the lowest remaining id
+            logger.error("Chat retention failed after {} rows: {}", deleted, e.getMessage());
+        }
+
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        long rowsPerSecond = deleted * 1000 / elapsedMillis;
+        lastRowsPerSecond.set(rowsPerSecond);
+        logger.info("Chat retention: deleted {} messages older than {} days in {} chunks, {} ms ({} rows/s)",
+                deleted, maxAgeDays, chunks, elapsedMillis, rowsPerSecond);
+    }
+
+    // A summary whose turns all predate the cutoff would otherwise keep purged conversations alive
+    private void purgeSummaries(LocalDateTime cutoff) {
+        long cleared = 0;
+        try {
+            long afterId = 0;
+            while (true) {
+                List<Long> ids = userRepository.findIdsWithChatSummaryBefore(afterId, cutoff, PageRequest.of(0, chunkSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                int count = conversationMemory.evict(ids, () -> userRepository.clearChatSummariesBefore(ids, cutoff));
+                cleared += count;
+                clearedSummaries.increment(count);
+                afterId = ids.get(ids.size() - 1);
+                if (ids.size() < chunkSize) {
+                    break;
+                }
+                if (pauseMs > 0) {
+                    Thread.sleep(pauseMs);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Chat summary retention interrupted after {} users", cleared);
+        } catch (Exception e) {
+            logger.error("Chat summary retention failed after {} users: {}", cleared, e.getMessage());
+        }
+        if (cleared > 0) {
+            logger.info("Chat retention: cleared {} chat summaries older than {} days", cleared, maxAgeDays);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.gaubong.teddybearshop.service;
+
+import com.gaubong.teddybearshop.util.VietnameseTextUtil;
+import com.theokanning.openai.completion.chat.ChatMessage;
+
+import java.time.LocalDateTime;
+
+/**
+ * One remembered user/assistant exchange, ready to go into a prompt: the API
+ * messages and the token estimate are built once when the turn is recorded.
+ * Immutable, shared between requests.
+ */
+public final class ChatTurn {
+
+    private final ChatMessage userMessage;
+    private final ChatMessage assistantMessage;
+    private final int tokens;
+    private final LocalDateTime createdAt;
+
+    ChatTurn(String userMessage, String botResponse, LocalDateTime createdAt) {
+        this.userMessage = new ChatMessage("user", userMessage);
+        this.assistantMessage = new ChatMessage("assistant", botResponse);
+        this.tokens = VietnameseTextUtil.estimateTokens(userMessage) + VietnameseTextUtil.estimateTokens(botResponse);
+        this.createdAt = createdAt;
+    }
+
+    public ChatMessage getUserMessage() { return userMessage; }
+
+    public ChatMessage getAssistantMessage() { return assistantMessage; }
+
+    public int getTokens() { return tokens; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+}
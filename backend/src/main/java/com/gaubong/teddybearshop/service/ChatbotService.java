@@ -1,27 +1,53 @@
 package com.gaubong.teddybearshop.service;
 
+import com.gaubong.teddybearshop.dto.ChatResponse;
+import com.gaubong.teddybearshop.dto.CursorSlice;
 import com.gaubong.teddybearshop.entity.ChatMessage;
 import com.gaubong.teddybearshop.entity.User;
 import com.gaubong.teddybearshop.repository.ChatMessageRepository;
+import com.gaubong.teddybearshop.resilience.DependencyUnavailableException;
+import com.gaubong.teddybearshop.resilience.OutboundGuard;
+import com.gaubong.teddybearshop.util.KeysetCursor;
+import com.theokanning.openai.completion.chat.ChatCompletionChunk;
 import com.theokanning.openai.completion.chat.ChatCompletionRequest;
 import com.theokanning.openai.service.OpenAiService;
+import io.reactivex.subscribers.ResourceSubscriber;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.time.Duration;
+import java.io.IOException;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class ChatbotService {
 
     private static final Logger logger = LoggerFactory.getLogger(ChatbotService.class);
 
+    private static final String CHAT_CURSOR_SORT = "createdAt,desc";
+
     @Value("${openai.api-key}")
     private String apiKey;
 
@@ -34,9 +60,88 @@ public class ChatbotService {
     @Value("${openai.temperature:0.7}")
     private Double temperature;
 
+    @Value("${openai.chat.threads:16}")
+    private int chatThreads;
+
+    @Value("${openai.chat.queue-capacity:100}")
+    private int chatQueueCapacity;
+
+    // How long shutdown waits for running chat calls and streams, so their messages get saved
+    @Value("${openai.chat.shutdown-timeout-seconds:30}")
+    private long shutdownTimeoutSeconds;
+
     @Autowired
     private ChatMessageRepository chatMessageRepository;
 
+    @Autowired
+    private OpenAiService openAiService;
+
+    @Autowired
+    private ChatFaqCache faqCache;
+
+    @Autowired
+    private ChatIntentRouter intentRouter;
+
+    @Autowired
+    private ChatProductRetriever productRetriever;
+
+    @Autowired
+    private ChatMessageBuffer messageBuffer;
+
+    @Autowired
+    private ConversationMemory conversationMemory;
+
+    @Autowired
+    @Qualifier("openAiGuard")
+    private OutboundGuard openAiGuard;
+
+    // Bounded pool for chat calls; full pool and queue means RejectedExecutionException
+    private ThreadPoolExecutor chatExecutor;
+
+    // Streams still reading from the model; their exchange is saved when they end
+    private final Set<ResourceSubscriber<ChatCompletionChunk>> activeStreams = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void startExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        chatExecutor = new ThreadPoolExecutor(chatThreads, chatThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(chatQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "chat-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Runs before ChatMessageBuffer is stopped (it depends on it): wait for chat calls
+     * and streams in flight, so every exchange reaches the buffer before its final flush.
+     */
+    @PreDestroy
+    public void stopExecutor() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(shutdownTimeoutSeconds);
+        chatExecutor.shutdown();
+        if (!chatExecutor.awaitTermination(shutdownTimeoutSeconds, TimeUnit.SECONDS)) {
+            logger.warn("Chat calls still running after {} s, shutting down anyway", shutdownTimeoutSeconds);
+        }
+        while (!activeStreams.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        if (!activeStreams.isEmpty()) {
+            logger.warn("{} chat streams still open at shutdown, their messages are not saved", activeStreams.size());
+        }
+    }
+
+    private static final String NOT_CONFIGURED_REPLY =
+        "Xin lỗi, tính năng chatbot chưa được kích hoạt. Vui lòng liên hệ admin để được hỗ trợ.";
+
+    private static final String BUSY_REPLY =
+        "Xin lỗi, trợ lý đang quá tải. Bạn vui lòng thử lại sau ít phút nhé.";
+
+    private static final String ERROR_REPLY =
+        "Xin lỗi, tôi đang gặp sự cố kỹ thuật. Vui lòng thử lại sau hoặc liên hệ hotline để được hỗ trợ trực tiếp.";
+
     private static final String SYSTEM_PROMPT = 
         "Bạn là trợ lý ảo của Shop Gấu Bông - một cửa hàng chuyên bán gấu bông đáng yêu. " +
         "Nhiệm vụ của bạn là hỗ trợ khách hàng về: " +
@@ -46,76 +151,292 @@ public class ChatbotService {
         "4. Tư vấn chọn quà tặng phù hợp " +
         "Hãy trả lời thân thiện, nhiệt tình và chuyên nghiệp bằng tiếng Việt.";
 
+    /**
+     * Run getChatResponse on the chat pool so the request thread is released while the model answers.
+     * Throws RejectedExecutionException right away when the pool is saturated.
+     */
+    public CompletableFuture<String> getChatResponseAsync(String userMessage, User user) {
+        return CompletableFuture.supplyAsync(() -> getChatResponse(userMessage, user), chatExecutor);
+    }
+
     public String getChatResponse(String userMessage, User user) {
         try {
+            // Đơn hàng, phí ship, thanh toán: trả lời từ dữ liệu của shop, không cần gọi model
+            Optional<String> routed = intentRouter.answer(userMessage, user);
+            if (routed.isPresent()) {
+                saveExchange(user, userMessage, routed.get(), false);
+                return routed.get();
+            }
+
             // Kiểm tra API key
-            if (apiKey == null || apiKey.equals("YOUR_OPENAI_API_KEY_HERE")) {
+            if (!isConfigured()) {
                 logger.warn("OpenAI API key chưa được cấu hình");
-                return "Xin lỗi, tính năng chatbot chưa được kích hoạt. Vui lòng liên hệ admin để được hỗ trợ.";
+                return NOT_CONFIGURED_REPLY;
             }
 
-            // Tạo OpenAI service với timeout
-            OpenAiService service = new OpenAiService(apiKey, Duration.ofSeconds(30));
-
-            // Tạo danh sách messages cho GPT
-            List<com.theokanning.openai.completion.chat.ChatMessage> messages = new ArrayList<>();
-            
-            // System message
-            messages.add(new com.theokanning.openai.completion.chat.ChatMessage("system", SYSTEM_PROMPT));
-            
-            // Nếu có user, lấy lịch sử chat gần đây để context
-            if (user != null) {
-                List<ChatMessage> recentChats = chatMessageRepository.findTop10ByUserOrderByCreatedAtDesc(user);
-                
-                // Thêm context từ lịch sử (đảo ngược để đúng thứ tự thời gian)
-                for (int i = recentChats.size() - 1; i >= 0; i--) {
-                    ChatMessage chat = recentChats.get(i);
-                    messages.add(new com.theokanning.openai.completion.chat.ChatMessage("user", chat.getUserMessage()));
-                    messages.add(new com.theokanning.openai.completion.chat.ChatMessage("assistant", chat.getBotResponse()));
-                }
+            // Câu trả lời dựa trên giá, tồn kho hiện tại thì không lấy từ cache và không cache lại
+            String productContext = productRetriever.productContext(userMessage);
+
+            // Câu hỏi thường gặp (đã hỏi đủ warm-min-count lần), không phụ thuộc ngữ cảnh: trả lời từ cache
+            String faqKey = productContext == null ? faqCache.keyFor(userMessage) : null;
+            Optional<String> cached = faqCache.get(faqKey);
+            if (cached.isPresent()) {
+                saveExchange(user, userMessage, cached.get(), true);
+                return cached.get();
             }
-            
-            // Thêm tin nhắn mới
-            messages.add(new com.theokanning.openai.completion.chat.ChatMessage("user", userMessage));
-
-            // Tạo request
-            ChatCompletionRequest completionRequest = ChatCompletionRequest.builder()
-                    .model(model)
-                    .messages(messages)
-                    .maxTokens(maxTokens)
-                    .temperature(temperature)
-                    .build();
-
-            // Gọi API
-            String response = service.createChatCompletion(completionRequest)
+
+            // Câu trả lời sẽ được cache cho mọi khách: không gửi kèm lịch sử, tóm tắt của user này
+            ChatCompletionRequest completionRequest = buildCompletionRequest(
+                    userMessage, faqKey == null ? user : null, productContext);
+
+            // Gọi API (bulkhead + circuit breaker)
+            long start = System.nanoTime();
+            String response = openAiGuard.call(() -> openAiService.createChatCompletion(completionRequest))
                     .getChoices()
                     .get(0)
                     .getMessage()
                     .getContent();
+            faqCache.put(faqKey, response, System.nanoTime() - start);
 
-            // Lưu vào database nếu user đã đăng nhập
-            if (user != null) {
-                ChatMessage chatMessage = new ChatMessage(user, userMessage, response);
-                chatMessageRepository.save(chatMessage);
-                logger.info("Chat response generated and saved for user: {}", user.getUsername());
-            } else {
-                logger.info("Chat response generated for anonymous user");
-            }
-
+            saveExchange(user, userMessage, response, faqKey != null);
             return response;
 
+        } catch (DependencyUnavailableException e) {
+            // Trả lời ngay thay vì chờ một upstream đang lỗi hoặc quá tải
+            logger.warn("OpenAI call refused: {}", e.getMessage());
+            return BUSY_REPLY;
         } catch (Exception e) {
             logger.error("Error calling OpenAI API: {}", e.getMessage(), e);
-            return "Xin lỗi, tôi đang gặp sự cố kỹ thuật. Vui lòng thử lại sau hoặc liên hệ hotline để được hỗ trợ trực tiếp.";
+            return ERROR_REPLY;
+        }
+    }
+
+    /**
+     * Stream the reply to the emitter as "token" events while the model generates it,
+     * then a "done" event with the full reply, which is saved once the stream ends.
+     * The next chunk is only requested after the previous one has been written, so a
+     * slow client slows the upstream read. If the client goes away the subscription
+     * is disposed, which closes the upstream response and stops generation.
+     */
+    public void streamChatResponse(String userMessage, User user, SseEmitter emitter) {
+        Optional<String> routed = intentRouter.answer(userMessage, user);
+        if (routed.isPresent()) {
+            saveExchange(user, userMessage, routed.get(), false);
+            sendAndComplete(emitter, userMessage, routed.get(), false);
+            return;
+        }
+
+        if (!isConfigured()) {
+            logger.warn("OpenAI API key chưa được cấu hình");
+            sendAndComplete(emitter, userMessage, NOT_CONFIGURED_REPLY, false);
+            return;
+        }
+
+        String productContext = productRetriever.productContext(userMessage);
+        String faqKey = productContext == null ? faqCache.keyFor(userMessage) : null;
+        Optional<String> cached = faqCache.get(faqKey);
+        if (cached.isPresent()) {
+            saveExchange(user, userMessage, cached.get(), true);
+            sendAndComplete(emitter, userMessage, cached.get(), false);
+            return;
+        }
+
+        long start = System.nanoTime();
+        ChatCompletionRequest completionRequest;
+        try {
+            completionRequest = buildCompletionRequest(userMessage, faqKey == null ? user : null, productContext);
+        } catch (Exception e) {
+            logger.error("Error preparing chat stream: {}", e.getMessage(), e);
+            sendAndComplete(emitter, userMessage, ERROR_REPLY, false);
+            return;
+        }
+
+        // Slot giữ đến khi stream kết thúc; circuit breaker chấm điểm theo token đầu tiên
+        OutboundGuard.Permit permit;
+        try {
+            permit = openAiGuard.acquire();
+        } catch (DependencyUnavailableException e) {
+            logger.warn("OpenAI stream refused: {}", e.getMessage());
+            sendAndComplete(emitter, userMessage, BUSY_REPLY, false);
+            return;
+        }
+
+        StringBuilder assembled = new StringBuilder();
+        ResourceSubscriber<ChatCompletionChunk> subscriber = new ResourceSubscriber<>() {
+            @Override
+            protected void onStart() {
+                request(1);
+            }
+
+            @Override
+            public void onNext(ChatCompletionChunk chunk) {
+                permit.responded();
+                String token = chunkText(chunk);
+                if (token != null && !token.isEmpty()) {
+                    assembled.append(token);
+                    try {
+                        emitter.send(SseEmitter.event().name("token")
+                                .data(Map.of("text", token), MediaType.APPLICATION_JSON));
+                    } catch (IOException | IllegalStateException e) {
+                        // Client disconnected: stop reading from the model
+                        dispose();
+                        activeStreams.remove(this);
+                        permit.cancel();
+                        return;
+                    }
+                }
+                request(1);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                logger.error("Error streaming from OpenAI API: {}", t.getMessage(), t);
+                activeStreams.remove(this);
+                permit.failure(t);
+                try {
+                    emitter.send(SseEmitter.event().name("error")
+                            .data(Map.of("message", ERROR_REPLY), MediaType.APPLICATION_JSON));
+                    emitter.complete();
+                } catch (IOException | IllegalStateException e) {
+                    emitter.completeWithError(t);
+                }
+            }
+
+            @Override
+            public void onComplete() {
+                permit.success();
+                String response = assembled.toString();
+                faqCache.put(faqKey, response, System.nanoTime() - start);
+                try {
+                    saveExchange(user, userMessage, response, faqKey != null);
+                } catch (Exception e) {
+                    logger.error("Cannot save streamed chat message: {}", e.getMessage(), e);
+                }
+                activeStreams.remove(this);
+                sendAndComplete(emitter, userMessage, response, true);
+            }
+        };
+
+        // Client gone or timed out: stop generation and give the slot back
+        emitter.onCompletion(() -> {
+            subscriber.dispose();
+            activeStreams.remove(subscriber);
+            permit.cancel();
+        });
+        emitter.onTimeout(() -> {
+            subscriber.dispose();
+            activeStreams.remove(subscriber);
+            permit.cancel();
+        });
+        emitter.onError(e -> {
+            subscriber.dispose();
+            activeStreams.remove(subscriber);
+            permit.cancel();
+        });
+        activeStreams.add(subscriber);
+        try {
+            openAiService.streamChatCompletion(completionRequest).subscribe(subscriber);
+        } catch (RuntimeException e) {
+            activeStreams.remove(subscriber);
+            permit.failure(e);
+            throw e;
+        }
+    }
+
+    private boolean isConfigured() {
+        return apiKey != null && !apiKey.equals("YOUR_OPENAI_API_KEY_HERE");
+    }
+
+    private ChatCompletionRequest buildCompletionRequest(String userMessage, User user, String productContext) {
+        // Tạo danh sách messages cho GPT
+        List<com.theokanning.openai.completion.chat.ChatMessage> messages = new ArrayList<>();
+        
+        // System message
+        messages.add(new com.theokanning.openai.completion.chat.ChatMessage("system", SYSTEM_PROMPT));
+
+        // Sản phẩm thật liên quan đến câu hỏi (giá, tồn kho) từ chỉ mục trong bộ nhớ
+        if (productContext != null) {
+            messages.add(new com.theokanning.openai.completion.chat.ChatMessage("system", productContext));
+        }
+        
+        // Nếu có user: tóm tắt các lượt cũ + các lượt gần nhất vừa ngân sách token
+        if (user != null) {
+            messages.addAll(conversationMemory.history(user));
+        }
+        
+        // Thêm tin nhắn mới
+        messages.add(new com.theokanning.openai.completion.chat.ChatMessage("user", userMessage));
+
+        // Tạo request
+        return ChatCompletionRequest.builder()
+                .model(model)
+                .messages(messages)
+                .maxTokens(maxTokens)
+                .temperature(temperature)
+                .build();
+    }
+
+    // Lưu vào database nếu user đã đăng nhập; shareable: câu trả lời không dùng ngữ cảnh riêng của user
+    private void saveExchange(User user, String userMessage, String response, boolean shareable) {
+        if (user != null) {
+            // Ghi theo lô ở nền (write-behind)
+            messageBuffer.add(user, userMessage, response, shareable);
+            logger.info("Chat response generated and queued for user: {}", user.getUsername());
+        } else {
+            logger.info("Chat response generated for anonymous user");
+        }
+    }
+
+    private static String chunkText(ChatCompletionChunk chunk) {
+        if (chunk.getChoices() == null || chunk.getChoices().isEmpty()
+                || chunk.getChoices().get(0).getMessage() == null) {
+            return null;
+        }
+        return chunk.getChoices().get(0).getMessage().getContent();
+    }
+
+    // Sự kiện "done" mang cả câu trả lời; nếu chưa stream thì gửi nó như một token trước
+    private static void sendAndComplete(SseEmitter emitter, String userMessage, String response, boolean streamed) {
+        try {
+            if (!streamed) {
+                emitter.send(SseEmitter.event().name("token")
+                        .data(Map.of("text", response), MediaType.APPLICATION_JSON));
+            }
+            emitter.send(SseEmitter.event().name("done")
+                    .data(new ChatResponse(null, userMessage, response, LocalDateTime.now()), MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
         }
     }
 
     public Page<ChatMessage> getChatHistory(User user, Pageable pageable) {
+        messageBuffer.flushPending(user);
         return chatMessageRepository.findByUserOrderByCreatedAtDesc(user, pageable);
     }
 
+    /**
+     * Keyset page of the user's chat history, newest first. cursor is null or empty for the first page.
+     */
+    public CursorSlice<ChatMessage> getChatHistoryAfter(User user, String cursor, int size) {
+        KeysetCursor after = cursor == null || cursor.isEmpty() ? null : KeysetCursor.decode(cursor, CHAT_CURSOR_SORT);
+        LocalDateTime beforeCreatedAt = after != null ? after.getRequiredValueAsDateTime() : LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+        Long beforeId = after != null ? after.getId() : Long.MAX_VALUE;
+        if (after == null) {
+            messageBuffer.flushPending(user);
+        }
+
+        Slice<ChatMessage> slice = chatMessageRepository.findByUserBefore(user, beforeCreatedAt, beforeId, PageRequest.of(0, size));
+        String nextCursor = null;
+        if (slice.hasNext()) {
+            ChatMessage last = slice.getContent().get(slice.getNumberOfElements() - 1);
+            nextCursor = KeysetCursor.encode(CHAT_CURSOR_SORT, last.getCreatedAt(), last.getId());
+        }
+        return new CursorSlice<>(slice.getContent(), size, slice.hasNext(), nextCursor);
+    }
+
     public void clearChatHistory(User user) {
-        List<ChatMessage> userChats = chatMessageRepository.findTop10ByUserOrderByCreatedAtDesc(user);
-        chatMessageRepository.deleteAll(userChats);
+        conversationMemory.clear(user);
+        messageBuffer.clear(user, () -> chatMessageRepository.deleteByUserId(user.getId()));
     }
 }
@@ -0,0 +1,294 @@
+package com.gaubong.teddybearshop.service;
+
+import com.gaubong.teddybearshop.entity.User;
+import com.gaubong.teddybearshop.repository.UserRepository;
+import com.gaubong.teddybearshop.resilience.OutboundGuard;
+import com.gaubong.teddybearshop.util.VietnameseTextUtil;
+import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import com.theokanning.openai.service.OpenAiService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Conversation history for the prompt under a token budget. The newest turns
+ * are replayed verbatim while they fit; older ones, including those pushed out
+ * of ChatMessageBuffer's recent window, are folded into a rolling summary that
+ * is generated off the request path, stored on the user row and cached here. Turns and the summary message are built once, so assembling a
+ * prompt only walks precomputed token counts.
+ */
+@Component
+public class ConversationMemory {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationMemory.class);
+
+    private static final int SUMMARY_MAX_CHARS = 2000;
+
+    private static final String SUMMARY_PROMPT =
+        "Tóm tắt ngắn gọn cuộc trò chuyện giữa khách hàng và trợ lý của Shop Gấu Bông. " +
+        "Giữ lại những gì cần cho các câu trả lời sau: sản phẩm khách quan tâm, ngân sách, " +
+        "người nhận quà, đơn hàng đã nhắc đến và thông tin khách đã cung cấp. " +
+        "Chỉ trả về đoạn tóm tắt, không quá 120 từ.";
+
+    @Autowired
+    private ChatMessageBuffer messageBuffer;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private OpenAiService openAiService;
+
+    @Autowired
+    @Qualifier("openAiGuard")
+    private OutboundGuard openAiGuard;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${openai.api-key}")
+    private String apiKey;
+
+    @Value("${openai.model:gpt-3.5-turbo}")
+    private String model;
+
+    // Budget for summary + verbatim turns, see VietnameseTextUtil.estimateTokens
+    @Value("${chatbot.memory.max-tokens:1200}")
+    private int maxTokens;
+
+    @Value("${chatbot.memory.summary-max-tokens:250}")
+    private int summaryMaxTokens;
+
+    @Value("${chatbot.memory.cache-users:10000}")
+    private int cacheUsers;
+
+    // Summaries by user id; LRU, loaded from the users table on first use
+    private final Map<Long, Summary> summaries = new LinkedHashMap<>(256, 0.75f, true);
+
+    // Serializes summary writes with clear(), so a summary never outlives a cleared history
+    private final Object writeLock = new Object();
+
+    private final Set<Long> summarizing = ConcurrentHashMap.newKeySet();
+
+    private ThreadPoolExecutor summaryExecutor;
+    private DistributionSummary historyTokens;
+    private Counter summariesWritten;
+
+    @PostConstruct
+    public void start() {
+        // Best effort: when the queue is full the turns are summarized on a later message
+        summaryExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(100),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "chat-summary");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        historyTokens = meterRegistry.summary("chatbot.prompt.history.tokens");
+        summariesWritten = meterRegistry.counter("chatbot.memory.summaries");
+    }
+
+    @PreDestroy
+    public void stop() {
+        summaryExecutor.shutdownNow();
+    }
+
+    /**
+     * Messages to place between the system prompt and the new user message:
+     * the rolling summary (if any) followed by the newest turns that fit the budget.
+     */
+    public List<ChatMessage> history(User user) {
+        List<ChatTurn> turns = messageBuffer.recent(user);
+        Summary summary = summaryFor(user.getId());
+
+        int budget = maxTokens - summary.tokens;
+        int first = turns.size();
+        while (first > 0 && turns.get(first - 1).getTokens() <= budget) {
+            first--;
+            budget -= turns.get(first).getTokens();
+        }
+
+        // Turns that fell out of the window, or out of the buffer's ring, and are not in the summary yet
+        List<ChatTurn> unsummarized = new ArrayList<>();
+        for (ChatTurn turn : messageBuffer.dropped(user)) {
+            if (summary.until == null || turn.getCreatedAt().isAfter(summary.until)) {
+                unsummarized.add(turn);
+            }
+        }
+        for (int i = 0; i < first; i++) {
+            if (summary.until == null || turns.get(i).getCreatedAt().isAfter(summary.until)) {
+                unsummarized.add(turns.get(i));
+            }
+        }
+        if (!unsummarized.isEmpty()) {
+            scheduleSummary(user.getId(), summary, unsummarized);
+        }
+
+        List<ChatMessage> messages = new ArrayList<>(2 * (turns.size() - first) + 1);
+        if (summary.message != null) {
+            messages.add(summary.message);
+        }
+        for (int i = first; i < turns.size(); i++) {
+            messages.add(turns.get(i).getUserMessage());
+            messages.add(turns.get(i).getAssistantMessage());
+        }
+        historyTokens.record(maxTokens - budget);
+        return messages;
+    }
+
+    /**
+     * Forget the summary, in the database and in memory.
+     */
+    public void clear(User user) {
+        synchronized (writeLock) {
+            userRepository.updateChatSummary(user.getId(), null, null);
+            synchronized (summaries) {
+                summaries.put(user.getId(), new Summary(null, null));
+            }
+        }
+    }
+
+    /**
+     * Run clearStored, which clears these users' summaries in the database, then drop
+     * them from the cache. Used by ChatRetentionJob for summaries of purged turns;
+     * returns what clearStored returned.
+     */
+    public int evict(Collection<Long> userIds, IntSupplier clearStored) {
+        synchronized (writeLock) {
+            int cleared = clearStored.getAsInt();
+            synchronized (summaries) {
+                for (Long userId : userIds) {
+                    summaries.remove(userId);
+                }
+            }
+            return cleared;
+        }
+    }
+
+    private Summary summaryFor(Long userId) {
+        synchronized (summaries) {
+            Summary cached = summaries.get(userId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        List<Object[]> rows = userRepository.findChatSummary(userId);
+        Summary loaded = rows.isEmpty()
+                ? new Summary(null, null)
+                : new Summary((String) rows.get(0)[0], (LocalDateTime) rows.get(0)[1]);
+        synchronized (summaries) {
+            // Keep a summary written meanwhile
+            Summary current = summaries.putIfAbsent(userId, loaded);
+            while (summaries.size() > cacheUsers) {
+                summaries.remove(summaries.keySet().iterator().next());
+            }
+            return current != null ? current : loaded;
+        }
+    }
+
+    private void scheduleSummary(Long userId, Summary base, List<ChatTurn> turns) {
+        if (!isConfigured() || !summarizing.add(userId)) {
+            return;
+        }
+        try {
+            summaryExecutor.execute(() -> {
+                try {
+                    summarize(userId, base, turns);
+                } catch (Exception e) {
+                    logger.warn("Cannot summarize chat history for user {}: {}", userId, e.getMessage());
+                } finally {
+                    summarizing.remove(userId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            summarizing.remove(userId);
+        }
+    }
+
+    private void summarize(Long userId, Summary base, List<ChatTurn> turns) throws Exception {
+        StringBuilder transcript = new StringBuilder();
+        if (base.text != null) {
+            transcript.append("Tóm tắt trước đó: ").append(base.text).append("\n\n");
+        }
+        transcript.append("Các lượt trò chuyện tiếp theo:");
+        for (ChatTurn turn : turns) {
+            transcript.append("\nKhách: ").append(turn.getUserMessage().getContent());
+            transcript.append("\nTrợ lý: ").append(turn.getAssistantMessage().getContent());
+        }
+
+        ChatCompletionRequest request = ChatCompletionRequest.builder()
+                .model(model)
+                .messages(List.of(new ChatMessage("system", SUMMARY_PROMPT),
+                        new ChatMessage("user", transcript.toString())))
+                .maxTokens(summaryMaxTokens)
+                .temperature(0.2)
+                .build();
+        String text = openAiGuard.call(() -> openAiService.createChatCompletion(request))
+                .getChoices().get(0).getMessage().getContent();
+        if (text == null || text.isBlank()) {
+            return;
+        }
+        text = text.trim();
+        if (text.length() > SUMMARY_MAX_CHARS) {
+            text = text.substring(0, SUMMARY_MAX_CHARS);
+        }
+        LocalDateTime until = turns.get(turns.size() - 1).getCreatedAt();
+
+        synchronized (writeLock) {
+            synchronized (summaries) {
+                // Cleared or evicted meanwhile: drop this summary, it is rebuilt on demand
+                if (summaries.get(userId) != base) {
+                    return;
+                }
+            }
+            userRepository.updateChatSummary(userId, text, until);
+            synchronized (summaries) {
+                summaries.put(userId, new Summary(text, until));
+            }
+        }
+        messageBuffer.summarized(userId, until);
+        summariesWritten.increment();
+    }
+
+    private boolean isConfigured() {
+        return apiKey != null && !apiKey.equals("YOUR_OPENAI_API_KEY_HERE");
+    }
+
+    private static final class Summary {
+        final String text;
+        final LocalDateTime until;
+        final ChatMessage message;
+        final int tokens;
+
+        Summary(String text, LocalDateTime until) {
+            this.text = text;
+            this.until = until;
+            this.message = text != null ? new ChatMessage("system", "Tóm tắt cuộc trò chuyện trước đó: " + text) : null;
+            this.tokens = message != null ? VietnameseTextUtil.estimateTokens(message.getContent()) : 0;
+        }
+    }
+}
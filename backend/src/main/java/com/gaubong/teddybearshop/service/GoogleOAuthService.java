@@ -2,12 +2,15 @@ package com.gaubong.teddybearshop.service;
 
 import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken;
 import com.google.api.client.googleapis.auth.oauth2.GoogleIdTokenVerifier;
-import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.googleapis.auth.oauth2.GooglePublicKeysManager;
+import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.gson.GsonFactory;
 import com.gaubong.teddybearshop.entity.User;
+import com.gaubong.teddybearshop.resilience.OutboundGuard;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -23,14 +26,35 @@ public class GoogleOAuthService {
     @Value("${google.oauth.client-id}")
     private String googleClientId;
 
+    // Point at a local stub to test certificate fetches with injected latency or failures
+    @Value("${google.oauth.certs-url:https://www.googleapis.com/oauth2/v1/certs}")
+    private String certsUrl;
+
+    @Value("${google.oauth.connect-timeout-ms:2000}")
+    private int connectTimeoutMs;
+
+    @Value("${google.oauth.read-timeout-ms:3000}")
+    private int readTimeoutMs;
+
     @Autowired
     private UserService userService;
 
+    @Autowired
+    @Qualifier("googleGuard")
+    private OutboundGuard googleGuard;
+
+    private final JsonFactory jsonFactory = GsonFactory.getDefaultInstance();
+
     private GoogleIdTokenVerifier verifier;
 
-    public GoogleIdTokenVerifier getVerifier() {
+    public synchronized GoogleIdTokenVerifier getVerifier() {
         if (verifier == null) {
-            verifier = new GoogleIdTokenVerifier.Builder(new NetHttpTransport(), new GsonFactory())
+            // Default transport waits up to 20 s: a stalled certificate fetch would hold the request thread
+            TimedHttpTransport transport = new TimedHttpTransport(connectTimeoutMs, readTimeoutMs);
+            GooglePublicKeysManager publicKeysManager = new GooglePublicKeysManager.Builder(transport, jsonFactory)
+                    .setPublicCertsEncodedUrl(certsUrl)
+                    .build();
+            verifier = new GoogleIdTokenVerifier.Builder(publicKeysManager)
                     .setAudience(Collections.singletonList(googleClientId))
                     .build();
         }
@@ -38,7 +62,23 @@ public class GoogleOAuthService {
     }
 
     public User authenticateGoogleUser(String idTokenString) throws GeneralSecurityException, IOException {
-        GoogleIdToken idToken = getVerifier().verify(idTokenString);
+        // Parsing never leaves the process: junk tokens must not count against Google's circuit
+        GoogleIdToken parsedToken;
+        try {
+            parsedToken = GoogleIdToken.parse(jsonFactory, idTokenString);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid Google ID token", e);
+        }
+
+        // Only the verification (which may fetch Google's certificates) runs under the guard
+        GoogleIdToken idToken;
+        try {
+            idToken = googleGuard.call(() -> getVerifier().verify(parsedToken) ? parsedToken : null);
+        } catch (GeneralSecurityException | IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
         
         if (idToken != null) {
             GoogleIdToken.Payload payload = idToken.getPayload();
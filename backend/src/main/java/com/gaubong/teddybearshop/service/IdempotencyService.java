@@ -0,0 +1,244 @@
+package com.gaubong.teddybearshop.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gaubong.teddybearshop.entity.IdempotencyKey;
+import com.gaubong.teddybearshop.repository.IdempotencyKeyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key handling for endpoints that must not run twice (checkout, payment creation).
+ * The first request with a key runs; retries get the stored response back without running again,
+ * and concurrent duplicates wait for the first one to finish. Recent keys live in a bounded
+ * in-memory LRU with TTL; every stored response is also written to idempotency_keys so
+ * replays survive a restart. 5xx responses are never stored, so those can be retried.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jsonConverter;
+
+    @Value("${app.idempotency.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${app.idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${app.idempotency.wait-timeout-seconds:30}")
+    private long waitTimeoutSeconds;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    /**
+     * Run action once per (scope, key). Without a key the action simply runs.
+     * scope should identify the endpoint and caller, so keys of different users never collide.
+     */
+    public ResponseEntity<?> execute(String scope, String key, Object requestBody,
+                                     Supplier<ResponseEntity<?>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > 255) {
+            return ResponseEntity.badRequest().body(HEADER + " must be at most 255 characters");
+        }
+
+        String keyHash = sha256(scope + "\n" + key);
+        String requestHash = sha256(toJson(requestBody));
+
+        Entry entry;
+        boolean leader = false;
+        synchronized (entries) {
+            entry = entries.get(keyHash);
+            if (entry == null || entry.isExpired()) {
+                entry = new Entry(requestHash, System.currentTimeMillis() + Duration.ofHours(ttlHours).toMillis());
+                entries.put(keyHash, entry);
+                leader = true;
+                while (entries.size() > maxEntries) {
+                    entries.remove(entries.keySet().iterator().next());
+                }
+            }
+        }
+
+        if (!entry.requestHash.equals(requestHash)) {
+            return keyReusedResponse();
+        }
+        if (!leader) {
+            return awaitReplay(entry);
+        }
+
+        try {
+            Optional<IdempotencyKey> persisted = idempotencyKeyRepository.findById(keyHash)
+                    .filter(stored -> !stored.isExpired());
+            if (persisted.isPresent()) {
+                // Seen before the last restart
+                IdempotencyKey stored = persisted.get();
+                if (stored.getRequestHash() != null && !stored.getRequestHash().equals(requestHash)) {
+                    forget(keyHash, entry);
+                    entry.result.complete(null);
+                    return keyReusedResponse();
+                }
+                StoredResponse response = new StoredResponse(stored.getStatusCode(), stored.getContentType(), stored.getResponseBody());
+                entry.result.complete(response);
+                return response.toReplay();
+            }
+
+            ResponseEntity<?> response = action.get();
+            if (response.getStatusCode().is5xxServerError()) {
+                forget(keyHash, entry);
+                entry.result.complete(null);
+                return response;
+            }
+
+            StoredResponse stored = StoredResponse.of(response, this::toJson);
+            entry.result.complete(stored);
+            try {
+                idempotencyKeyRepository.save(new IdempotencyKey(keyHash, requestHash, stored.status,
+                        stored.contentType, stored.body, LocalDateTime.now().plusHours(ttlHours)));
+            } catch (RuntimeException e) {
+                // The action already ran: still answer it, the in-memory entry covers retries until a restart
+                logger.warn("Cannot persist idempotency key: {}", e.getMessage());
+            }
+            return response;
+        } catch (RuntimeException e) {
+            forget(keyHash, entry);
+            entry.result.complete(null);
+            throw e;
+        }
+    }
+
+    // Expired rows are also ignored on read; this only keeps the table small
+    @Scheduled(cron = "0 30 3 * * ?")
+    public void purgeExpiredKeys() {
+        int deleted = idempotencyKeyRepository.deleteExpired(LocalDateTime.now());
+        logger.info("Purged {} expired idempotency keys", deleted);
+    }
+
+    private ResponseEntity<?> awaitReplay(Entry entry) {
+        try {
+            StoredResponse response = entry.result.get(waitTimeoutSeconds, TimeUnit.SECONDS);
+            if (response == null) {
+                // The first request failed and was not stored; the client may retry with the same key
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body("The original request with this " + HEADER + " failed, please retry");
+            }
+            return response.toReplay();
+        } catch (TimeoutException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body("A request with this " + HEADER + " is still in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (ExecutionException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    private void forget(String keyHash, Entry entry) {
+        synchronized (entries) {
+            entries.remove(keyHash, entry);
+        }
+    }
+
+    private static ResponseEntity<?> keyReusedResponse() {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .body(HEADER + " was already used with a different request body");
+    }
+
+    private String toJson(Object value) {
+        try {
+            return jsonConverter.getObjectMapper().writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Cannot serialize response for idempotent replay: " + e.getMessage());
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Entry {
+        final String requestHash;
+        final long expiresAtMillis;
+        final CompletableFuture<StoredResponse> result = new CompletableFuture<>();
+
+        Entry(String requestHash, long expiresAtMillis) {
+            this.requestHash = requestHash;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() > expiresAtMillis;
+        }
+    }
+
+    private static final class StoredResponse {
+        final int status;
+        final String contentType;
+        final String body;
+
+        StoredResponse(int status, String contentType, String body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        // Plain strings are replayed as text, everything else as the JSON the client originally got
+        static StoredResponse of(ResponseEntity<?> response, Function<Object, String> toJson) {
+            Object body = response.getBody();
+            if (body == null) {
+                return new StoredResponse(response.getStatusCode().value(), null, null);
+            }
+            if (body instanceof String) {
+                return new StoredResponse(response.getStatusCode().value(), MediaType.TEXT_PLAIN_VALUE, (String) body);
+            }
+            return new StoredResponse(response.getStatusCode().value(), MediaType.APPLICATION_JSON_VALUE, toJson.apply(body));
+        }
+
+        ResponseEntity<?> toReplay() {
+            ResponseEntity.BodyBuilder builder = ResponseEntity.status(status).header(REPLAYED_HEADER, "true");
+            if (body == null) {
+                return builder.build();
+            }
+            return builder.contentType(MediaType.parseMediaType(contentType)).body(body);
+        }
+    }
+}
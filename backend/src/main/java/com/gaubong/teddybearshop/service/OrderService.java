@@ -1,28 +1,38 @@
 package com.gaubong.teddybearshop.service;
 
 import com.gaubong.teddybearshop.dto.CreateOrderRequest;
+import com.gaubong.teddybearshop.dto.CursorSlice;
 import com.gaubong.teddybearshop.entity.Order;
 import com.gaubong.teddybearshop.entity.OrderItem;
 import com.gaubong.teddybearshop.entity.Product;
 import com.gaubong.teddybearshop.entity.User;
 import com.gaubong.teddybearshop.repository.OrderRepository;
 import com.gaubong.teddybearshop.repository.OrderItemRepository;
+import com.gaubong.teddybearshop.util.KeysetCursor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.HashMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 @Service
 public class OrderService {
 
+    // Cursor paging only walks orders newest first
+    private static final String ORDER_CURSOR_SORT = "createdAt,desc";
+
     @Autowired
     private OrderRepository orderRepository;
 
@@ -69,63 +79,107 @@ public class OrderService {
         return orderRepository.findOrdersWithFilters(userId, status, startDate, endDate, pageable);
     }
 
-    @Transactional
-    public Order createOrder(Long userId, List<OrderItem> orderItems, String shippingAddress, String phoneNumber, String notes) {
-        User user = userService.getUserById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
+    /**
+     * Keyset listing of a user's orders, newest first. cursor is null or empty for the first page.
+     */
+    public CursorSlice<Order> getOrdersByUserAfter(Long userId, String cursor, int size) {
+        KeysetCursor after = decodeOrderCursor(cursor);
+        Slice<Order> slice = orderRepository.findByUserIdBefore(
+                userId, afterCreatedAt(after), afterId(after), PageRequest.of(0, size));
+        return toCursorSlice(slice, size);
+    }
 
-        // Validate stock availability
-        for (OrderItem item : orderItems) {
-            Product product = productService.getProductById(item.getProduct().getId())
-                    .orElseThrow(() -> new RuntimeException("Product not found with id: " + item.getProduct().getId()));
-            
-            if (!productService.isProductAvailable(product.getId(), item.getQuantity())) {
-                throw new RuntimeException("Insufficient stock for product: " + product.getName());
-            }
-        }
+    public CursorSlice<Order> getOrdersWithFiltersAfter(Order.OrderStatus status,
+                                                        LocalDateTime startDate, LocalDateTime endDate,
+                                                        String cursor, int size) {
+        KeysetCursor after = decodeOrderCursor(cursor);
+        Slice<Order> slice = orderRepository.findOrdersWithFiltersBefore(
+                status, startDate, endDate, afterCreatedAt(after), afterId(after), PageRequest.of(0, size));
+        return toCursorSlice(slice, size);
+    }
 
-        // Calculate total amount
-        BigDecimal totalAmount = calculateTotalAmount(orderItems);
+    private KeysetCursor decodeOrderCursor(String cursor) {
+        return cursor == null || cursor.isEmpty() ? null : KeysetCursor.decode(cursor, ORDER_CURSOR_SORT);
+    }
 
-        // Create order
-        Order order = new Order(user, totalAmount, shippingAddress, phoneNumber);
-        order.setNotes(notes);
-        order = orderRepository.save(order);
+    // First page: start above any real row
+    private LocalDateTime afterCreatedAt(KeysetCursor after) {
+        return after != null ? after.getRequiredValueAsDateTime() : LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+    }
 
-        // Create order items and update stock
-        for (OrderItem item : orderItems) {
-            Product product = productService.getProductById(item.getProduct().getId()).get();
-            item.setOrder(order);
-            item.setProduct(product);
-            item.setUnitPrice(product.getPrice());
-            item.calculateTotalPrice();
-            
-            orderItemRepository.save(item);
-            productService.decreaseStock(product.getId(), item.getQuantity());
+    private Long afterId(KeysetCursor after) {
+        return after != null ? after.getId() : Long.MAX_VALUE;
+    }
+
+    private CursorSlice<Order> toCursorSlice(Slice<Order> slice, int size) {
+        String nextCursor = null;
+        if (slice.hasNext()) {
+            Order last = slice.getContent().get(slice.getNumberOfElements() - 1);
+            nextCursor = KeysetCursor.encode(ORDER_CURSOR_SORT, last.getCreatedAt(), last.getId());
         }
+        return new CursorSlice<>(slice.getContent(), size, slice.hasNext(), nextCursor);
+    }
 
-        return order;
+    @Transactional
+    public Order createOrder(Long userId, List<OrderItem> orderItems, String shippingAddress, String phoneNumber, String notes) {
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (OrderItem item : orderItems) {
+            quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+        }
+        return placeOrder(userId, quantities, shippingAddress, phoneNumber, notes);
     }
 
     @Transactional
     public Order createOrder(User user, CreateOrderRequest orderRequest) {
-        List<OrderItem> orderItems = new java.util.ArrayList<>();
-        
+        // Duplicate lines for the same product are merged into one
+        Map<Long, Integer> quantities = new TreeMap<>();
         for (CreateOrderRequest.OrderItemRequest itemRequest : orderRequest.getOrderItems()) {
-            Product product = productService.getProductById(itemRequest.getProductId())
-                .orElseThrow(() -> new RuntimeException("Product not found: " + itemRequest.getProductId()));
-            
-            OrderItem orderItem = new OrderItem();
-            orderItem.setProduct(product);
-            orderItem.setQuantity(itemRequest.getQuantity());
-            orderItem.setUnitPrice(product.getPrice());
-            orderItems.add(orderItem);
+            quantities.merge(itemRequest.getProductId(), itemRequest.getQuantity(), Integer::sum);
         }
-        
-        return createOrder(user.getId(), orderItems, orderRequest.getShippingAddress(), 
+        return placeOrder(user.getId(), quantities, orderRequest.getShippingAddress(),
                           orderRequest.getPhoneNumber(), orderRequest.getNotes());
     }
 
+    /**
+     * Checkout in a fixed number of statements whatever the number of lines:
+     * lock and read all products (ascending id), one batched stock UPDATE,
+     * insert the order, one batched INSERT for its items.
+     */
+    private Order placeOrder(Long userId, Map<Long, Integer> quantities,
+                             String shippingAddress, String phoneNumber, String notes) {
+        if (quantities.isEmpty()) {
+            throw new RuntimeException("Order must contain at least one item");
+        }
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            if (line.getValue() == null || line.getValue() <= 0) {
+                throw new RuntimeException("Invalid quantity for product: " + line.getKey());
+            }
+        }
+
+        User user = userService.getUserById(userId)
+                .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
+
+        Map<Long, Product> products = productService.reserveStock(quantities);
+
+        // Price every line from the locked rows and compute the total once
+        List<OrderItem> items = new ArrayList<>(quantities.size());
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            Product product = products.get(line.getKey());
+            OrderItem item = new OrderItem(null, product, line.getValue(), product.getPrice());
+            items.add(item);
+            totalAmount = totalAmount.add(item.getTotalPrice());
+        }
+
+        Order order = new Order(user, totalAmount, shippingAddress, phoneNumber);
+        order.setNotes(notes);
+        order = orderRepository.save(order);
+
+        // Written with JDBC, not added to order.getOrderItems() (that collection cascades inserts)
+        orderItemRepository.insertBatch(order.getId(), items);
+        return order;
+    }
+
     public Order updateOrderStatus(Long id, Order.OrderStatus status) {
         Order order = orderRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Order not found with id: " + id));
@@ -172,10 +226,17 @@ public class OrderService {
     }
 
     public BigDecimal calculateTotalAmount(List<OrderItem> orderItems) {
+        Map<Long, Product> products = new HashMap<>();
+        for (Product product : productService.getProductsByIds(
+                orderItems.stream().map(item -> item.getProduct().getId()).collect(Collectors.toSet()))) {
+            products.put(product.getId(), product);
+        }
         return orderItems.stream()
                 .map(item -> {
-                    Product product = productService.getProductById(item.getProduct().getId())
-                            .orElseThrow(() -> new RuntimeException("Product not found"));
+                    Product product = products.get(item.getProduct().getId());
+                    if (product == null) {
+                        throw new RuntimeException("Product not found");
+                    }
                     return product.getPrice().multiply(BigDecimal.valueOf(item.getQuantity()));
                 })
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
@@ -0,0 +1,41 @@
+package com.gaubong.teddybearshop.service;
+
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Payment methods offered at checkout. Shared by PaymentController and the chatbot.
+ */
+@Service
+public class PaymentMethodService {
+
+    public Map<String, Object> getPaymentMethods() {
+        Map<String, Object> methods = new HashMap<>();
+        methods.put("cod", Map.of(
+            "name", "Thanh toán khi nhận hàng (COD)",
+            "description", "Thanh toán bằng tiền mặt khi nhận hàng",
+            "enabled", true
+        ));
+        methods.put("vnpay", Map.of(
+            "name", "Thanh toán qua VNPay",
+            "description", "Thanh toán qua thẻ ATM, Visa, MasterCard, QR Code",
+            "enabled", true,
+            "banks", getBankCodes()
+        ));
+        return methods;
+    }
+
+    /**
+     * Get supported bank codes
+     */
+    public Map<String, String> getBankCodes() {
+        Map<String, String> banks = new HashMap<>();
+        banks.put("VNPAYQR", "Thanh toán qua ứng dụng hỗ trợ VNPAYQR");
+        banks.put("VNBANK", "Thanh toán qua ATM-Tài khoản ngân hàng nội địa");
+        banks.put("INTCARD", "Thanh toán qua thẻ quốc tế");
+        banks.put("", "Cổng thanh toán VNPay (tất cả phương thức)");
+        return banks;
+    }
+}
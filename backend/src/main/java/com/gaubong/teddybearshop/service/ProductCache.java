@@ -0,0 +1,140 @@
+package com.gaubong.teddybearshop.service;
+
+import com.gaubong.teddybearshop.entity.Product;
+import com.gaubong.teddybearshop.repository.ProductRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Bounded read-through cache for product lookups by id.
+ * Least recently used entries are evicted beyond app.cache.products.max-size.
+ * Concurrent misses for the same id share one database load (single-flight).
+ * Entries are dropped after any committed product change (ProductChangedEvent);
+ * loads inside read-write transactions are served but not cached.
+ * Callers get their own detached copy, never the cached instance.
+ */
+@Component
+public class ProductCache {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.cache.products.max-size:10000}")
+    private int maxSize;
+
+    private final Map<Long, Product> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final ConcurrentHashMap<Long, CompletableFuture<Optional<Product>>> inFlight = new ConcurrentHashMap<>();
+
+    private Counter hits;
+    private Counter misses;
+    private Counter evictions;
+
+    @PostConstruct
+    public void registerMetrics() {
+        hits = meterRegistry.counter("product.cache.requests", "result", "hit");
+        misses = meterRegistry.counter("product.cache.requests", "result", "miss");
+        evictions = meterRegistry.counter("product.cache.evictions");
+        Gauge.builder("product.cache.size", this, ProductCache::size).register(meterRegistry);
+    }
+
+    public Optional<Product> get(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        Product cached;
+        synchronized (entries) {
+            cached = entries.get(id);
+        }
+        if (cached != null) {
+            hits.increment();
+            return Optional.of(ProductCatalogSnapshot.copyOf(cached));
+        }
+        misses.increment();
+
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            // A read-write transaction may see its own uncommitted changes; never cache those
+            return productRepository.findById(id).map(ProductCatalogSnapshot::copyOf);
+        }
+
+        CompletableFuture<Optional<Product>> mine = new CompletableFuture<>();
+        CompletableFuture<Optional<Product>> running = inFlight.putIfAbsent(id, mine);
+        if (running != null) {
+            // Someone is already loading this id: wait for their result
+            return join(running).map(ProductCatalogSnapshot::copyOf);
+        }
+
+        try {
+            Optional<Product> loaded = productRepository.findById(id).map(ProductCatalogSnapshot::copyOf);
+            // An invalidation during the load removes our future; the value may be stale then, so don't keep it
+            if (inFlight.remove(id, mine) && loaded.isPresent()) {
+                put(id, loaded.get());
+            }
+            mine.complete(loaded);
+            return loaded.map(ProductCatalogSnapshot::copyOf);
+        } catch (RuntimeException e) {
+            inFlight.remove(id, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        for (Long id : event.getProductIds()) {
+            invalidate(id);
+        }
+    }
+
+    public void invalidate(Long id) {
+        inFlight.remove(id);
+        synchronized (entries) {
+            entries.remove(id);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void put(Long id, Product product) {
+        synchronized (entries) {
+            entries.put(id, product);
+            while (entries.size() > maxSize) {
+                Long eldest = entries.keySet().iterator().next();
+                entries.remove(eldest);
+                evictions.increment();
+            }
+        }
+    }
+
+    private static Optional<Product> join(CompletableFuture<Optional<Product>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.gaubong.teddybearshop.service;
+
+import com.gaubong.teddybearshop.dto.ProductFacets;
+import com.gaubong.teddybearshop.entity.Product;
+import com.gaubong.teddybearshop.repository.ProductRepository;
+import com.gaubong.teddybearshop.util.KeysetCursor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Serves product browsing from an in-memory snapshot instead of MySQL.
+ * The snapshot is loaded once at startup and replaced (copy-on-write) after
+ * committed product changes; readers never block. The full-text
+ * ProductSearchIndex is fed from the same loads.
+ *
+ * Changes are applied by a single background thread: the committing request
+ * only records the product ids, so it never waits for the catalog lock or a
+ * second pool connection. Ids queued while a refresh runs are merged into the
+ * next one, and a failed refresh is retried.
+ */
+@Service
+public class ProductCatalogService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductCatalogService.class);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Value("${app.catalog.refresh-retry-ms:1000}")
+    private long refreshRetryMillis;
+
+    private volatile ProductCatalogSnapshot snapshot = ProductCatalogSnapshot.EMPTY;
+    private volatile boolean ready = false;
+
+    // Product ids changed by committed transactions and not yet applied
+    private final Set<Long> pendingIds = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private ScheduledExecutorService refresher;
+
+    @PostConstruct
+    public void startRefresher() {
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stopRefresher() {
+        refresher.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            reload();
+        } catch (Exception e) {
+            // Keep serving from the database until the next successful reload
+            logger.error("Cannot load product catalog snapshot: {}", e.getMessage());
+        }
+    }
+
+    public synchronized void reload() {
+        long start = System.nanoTime();
+        List<Product> products = productRepository.findAll();
+        snapshot = ProductCatalogSnapshot.of(products);
+        productSearchIndex.rebuild(products);
+        ready = true;
+        logger.info("Product catalog snapshot loaded: {} products in {} ms",
+                snapshot.size(), (System.nanoTime() - start) / 1_000_000);
+        // Changes committed while loading may have been missed by findAll
+        if (!pendingIds.isEmpty()) {
+            scheduleRefresh(0);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        pendingIds.addAll(event.getProductIds());
+        scheduleRefresh(0);
+    }
+
+    private void scheduleRefresh(long delayMillis) {
+        if (refreshScheduled.compareAndSet(false, true)) {
+            refresher.schedule(this::applyPendingChanges, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Runs on the refresher thread only; findAllById reads committed rows in its own read-only transaction
+    private void applyPendingChanges() {
+        refreshScheduled.set(false);
+        if (!ready || pendingIds.isEmpty()) {
+            // Not loaded yet: reload picks the pending ids up when it finishes
+            return;
+        }
+        Set<Long> ids = new HashSet<>(pendingIds);
+        pendingIds.removeAll(ids);
+        try {
+            List<Product> changed = productRepository.findAllById(ids);
+            Set<Long> removed = new HashSet<>(ids);
+            for (Product product : changed) {
+                removed.remove(product.getId());
+            }
+            synchronized (this) {
+                snapshot = snapshot.withChanges(changed, removed);
+                productSearchIndex.update(changed, removed);
+            }
+        } catch (Exception e) {
+            pendingIds.addAll(ids);
+            logger.warn("Cannot refresh product catalog for {} products, retrying: {}", ids.size(), e.getMessage());
+            scheduleRefresh(refreshRetryMillis);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Answer the product listing filters from the snapshot.
+     * Empty when the snapshot is not loaded yet or the sort is not indexed,
+     * in which case the caller should fall back to the repository.
+     */
+    public Optional<Page<Product>> findProducts(String name, Long categoryId,
+                                                BigDecimal minPrice, BigDecimal maxPrice,
+                                                Boolean inStock, Pageable pageable) {
+        ProductCatalogSnapshot current = snapshot;
+        if (!ready || !current.canSort(pageable.getSort())) {
+            return Optional.empty();
+        }
+        return Optional.of(current.query(name, categoryId, minPrice, maxPrice, inStock, pageable));
+    }
+
+    /**
+     * Keyset listing from the snapshot. Empty when the snapshot is not loaded yet.
+     */
+    public Optional<Slice<Product>> findProductsAfter(String name, Long categoryId,
+                                                      BigDecimal minPrice, BigDecimal maxPrice,
+                                                      Boolean inStock, String sortField, boolean descending,
+                                                      KeysetCursor after, int size) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        return Optional.of(snapshot.queryAfter(name, categoryId, minPrice, maxPrice, inStock,
+                sortField, descending, after, size));
+    }
+
+    /**
+     * Facet counts from the snapshot's bitmaps. Empty when the snapshot is not loaded yet.
+     */
+    public Optional<ProductFacets> getFacets(String name, Long categoryId,
+                                             BigDecimal minPrice, BigDecimal maxPrice, Boolean inStock) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        return Optional.of(snapshot.facets(name, categoryId, minPrice, maxPrice, inStock));
+    }
+
+    public static boolean supportsKeysetSort(String sortField) {
+        return ProductCatalogSnapshot.KEYSET_SORTS.contains(sortField);
+    }
+}
@@ -0,0 +1,584 @@
+package com.gaubong.teddybearshop.service;
+
+import com.gaubong.teddybearshop.dto.ProductFacets;
+import com.gaubong.teddybearshop.entity.Product;
+import com.gaubong.teddybearshop.util.KeysetCursor;
+import com.gaubong.teddybearshop.util.VietnameseTextUtil;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Immutable, column-oriented copy of the active products.
+ * Prices are stored in minor units (price * 100) so filtering never touches BigDecimal.
+ * Instances are never modified; changes produce a new snapshot (copy-on-write).
+ * A change to stock or price only re-derives the columns, orders and bitmaps
+ * that depend on them and shares everything else with the previous snapshot.
+ */
+final class ProductCatalogSnapshot {
+
+    private static final long NO_CATEGORY = Long.MIN_VALUE;
+
+    static final Set<String> KEYSET_SORTS = Set.of("id", "price", "createdAt");
+
+    // Lower bounds (VND) of the price facet buckets; the last bucket is open-ended
+    private static final long[] PRICE_BUCKET_BOUNDS = {0, 100_000, 200_000, 300_000, 500_000, 1_000_000};
+
+    static final ProductCatalogSnapshot EMPTY = new ProductCatalogSnapshot(List.of());
+
+    private final Product[] products;
+    private final long[] ids;
+    private final long[] prices;
+    private final int[] stocks;
+    private final long[] categoryIds;
+    private final String[] foldedNames;
+
+    // Row indexes pre-sorted by each sortable property (ascending, ties broken by id)
+    private final Map<String, int[]> sortOrders;
+
+    // Facet bitmaps: one row set per distinct value, intersected to count facets
+    private final Map<String, Map<String, BitSet>> facetRows;
+    private final BitSet inStockRows;
+    private final BitSet[] priceBucketRows;
+
+    private ProductCatalogSnapshot(List<Product> source) {
+        List<Product> rows = new ArrayList<>(source.size());
+        for (Product product : source) {
+            if (isListed(product)) {
+                rows.add(product);
+            }
+        }
+        rows.sort(Comparator.comparing(Product::getId));
+
+        int n = rows.size();
+        products = rows.toArray(new Product[0]);
+        ids = new long[n];
+        prices = new long[n];
+        stocks = new int[n];
+        categoryIds = new long[n];
+        foldedNames = new String[n];
+        sortOrders = new HashMap<>();
+        facetRows = new HashMap<>();
+
+        for (int i = 0; i < n; i++) {
+            Product p = products[i];
+            ids[i] = p.getId();
+            prices[i] = toMinorUnits(p.getPrice());
+            stocks[i] = p.getStock() != null ? p.getStock() : 0;
+            categoryIds[i] = p.getCategoryId() != null ? p.getCategoryId() : NO_CATEGORY;
+            foldedNames[i] = VietnameseTextUtil.fold(p.getName());
+        }
+
+        int[] byId = new int[n];
+        for (int i = 0; i < n; i++) {
+            byId[i] = i;
+        }
+        sortOrders.put("id", byId);
+        sortOrders.put("price", sortedBy(Comparator.comparingLong(i -> prices[i])));
+        sortOrders.put("stock", sortedBy(Comparator.comparingInt(i -> stocks[i])));
+        sortOrders.put("categoryId", sortedBy(Comparator.comparingLong(i -> categoryIds[i])));
+        sortOrders.put("name", sortedBy(Comparator.comparing(i -> foldedNames[i])));
+        sortOrders.put("createdAt", sortedBy(Comparator.comparing(i -> products[i].getCreatedAt(),
+                Comparator.nullsFirst(Comparator.naturalOrder()))));
+        sortOrders.put("updatedAt", sortedBy(Comparator.comparing(i -> products[i].getUpdatedAt(),
+                Comparator.nullsFirst(Comparator.naturalOrder()))));
+
+        facetRows.put("categoryId", rowsByValue(i -> categoryIds[i] != NO_CATEGORY ? String.valueOf(categoryIds[i]) : null));
+        facetRows.put("size", rowsByValue(i -> products[i].getSize()));
+        facetRows.put("color", rowsByValue(i -> products[i].getColor()));
+        facetRows.put("material", rowsByValue(i -> products[i].getMaterial()));
+        facetRows.put("ageRange", rowsByValue(i -> products[i].getAgeRange()));
+
+        inStockRows = new BitSet(n);
+        for (int i = 0; i < n; i++) {
+            if (stocks[i] > 0) {
+                inStockRows.set(i);
+            }
+        }
+        priceBucketRows = new BitSet[PRICE_BUCKET_BOUNDS.length];
+        for (int b = 0; b < PRICE_BUCKET_BOUNDS.length; b++) {
+            long upper = b + 1 < PRICE_BUCKET_BOUNDS.length ? PRICE_BUCKET_BOUNDS[b + 1] * 100 - 1 : Long.MAX_VALUE;
+            priceBucketRows[b] = rowsInPriceRange(PRICE_BUCKET_BOUNDS[b] * 100, upper);
+        }
+    }
+
+    // Patched copy: unchanged arrays, orders and bitmaps are shared, never written to
+    private ProductCatalogSnapshot(Product[] products, long[] ids, long[] prices, int[] stocks,
+                                   long[] categoryIds, String[] foldedNames, Map<String, int[]> sortOrders,
+                                   Map<String, Map<String, BitSet>> facetRows, BitSet inStockRows,
+                                   BitSet[] priceBucketRows) {
+        this.products = products;
+        this.ids = ids;
+        this.prices = prices;
+        this.stocks = stocks;
+        this.categoryIds = categoryIds;
+        this.foldedNames = foldedNames;
+        this.sortOrders = sortOrders;
+        this.facetRows = facetRows;
+        this.inStockRows = inStockRows;
+        this.priceBucketRows = priceBucketRows;
+    }
+
+    static ProductCatalogSnapshot of(Collection<Product> products) {
+        List<Product> copies = new ArrayList<>(products.size());
+        for (Product product : products) {
+            copies.add(copyOf(product));
+        }
+        return new ProductCatalogSnapshot(copies);
+    }
+
+    /**
+     * Build the next snapshot: upserted products replace rows with the same id,
+     * removed ids (and products that are no longer active) drop out.
+     */
+    ProductCatalogSnapshot withChanges(Collection<Product> upserts, Collection<Long> removedIds) {
+        if (removedIds.isEmpty()) {
+            ProductCatalogSnapshot patched = withStockAndPriceChanges(upserts);
+            if (patched != null) {
+                return patched;
+            }
+        }
+        Map<Long, Product> byId = new LinkedHashMap<>();
+        for (Product product : products) {
+            byId.put(product.getId(), product);
+        }
+        for (Long id : removedIds) {
+            byId.remove(id);
+        }
+        for (Product product : upserts) {
+            byId.put(product.getId(), copyOf(product));
+        }
+        return new ProductCatalogSnapshot(new ArrayList<>(byId.values()));
+    }
+
+    /**
+     * Patch listed rows whose changes are limited to stock, price and unindexed
+     * fields (e.g. every checkout). Null when any upsert needs a rebuild: a new
+     * or delisted product, or a change to a name, category, facet value or date.
+     */
+    private ProductCatalogSnapshot withStockAndPriceChanges(Collection<Product> upserts) {
+        Map<Integer, Product> changedRows = new TreeMap<>();
+        for (Product product : upserts) {
+            int row = Arrays.binarySearch(ids, product.getId());
+            if (row < 0 || !isListed(product) || !sameIndexedValues(products[row], product)) {
+                return null;
+            }
+            changedRows.put(row, copyOf(product));
+        }
+
+        Product[] nextProducts = products.clone();
+        long[] nextPrices = prices;
+        int[] nextStocks = stocks;
+        List<Integer> priceRows = new ArrayList<>();
+        List<Integer> stockRows = new ArrayList<>();
+        for (Map.Entry<Integer, Product> change : changedRows.entrySet()) {
+            int row = change.getKey();
+            Product product = change.getValue();
+            nextProducts[row] = product;
+            long price = toMinorUnits(product.getPrice());
+            if (price != prices[row]) {
+                if (nextPrices == prices) {
+                    nextPrices = prices.clone();
+                }
+                nextPrices[row] = price;
+                priceRows.add(row);
+            }
+            int stock = product.getStock() != null ? product.getStock() : 0;
+            if (stock != stocks[row]) {
+                if (nextStocks == stocks) {
+                    nextStocks = stocks.clone();
+                }
+                nextStocks[row] = stock;
+                stockRows.add(row);
+            }
+        }
+
+        Map<String, int[]> nextOrders = sortOrders;
+        BitSet nextInStock = inStockRows;
+        BitSet[] nextPriceBuckets = priceBucketRows;
+        if (!stockRows.isEmpty()) {
+            int[] stocksAfter = nextStocks;
+            nextOrders = new HashMap<>(nextOrders);
+            nextOrders.put("stock", reordered(sortOrders.get("stock"), stockRows, Comparator.comparingInt(i -> stocksAfter[i])));
+            nextInStock = (BitSet) inStockRows.clone();
+            for (int row : stockRows) {
+                nextInStock.set(row, stocksAfter[row] > 0);
+            }
+        }
+        if (!priceRows.isEmpty()) {
+            long[] pricesAfter = nextPrices;
+            nextOrders = nextOrders == sortOrders ? new HashMap<>(nextOrders) : nextOrders;
+            nextOrders.put("price", reordered(sortOrders.get("price"), priceRows, Comparator.comparingLong(i -> pricesAfter[i])));
+            nextPriceBuckets = new BitSet[priceBucketRows.length];
+            for (int b = 0; b < priceBucketRows.length; b++) {
+                nextPriceBuckets[b] = (BitSet) priceBucketRows[b].clone();
+                for (int row : priceRows) {
+                    nextPriceBuckets[b].clear(row);
+                }
+            }
+            for (int row : priceRows) {
+                int bucket = priceBucket(pricesAfter[row]);
+                if (bucket >= 0) {
+                    nextPriceBuckets[bucket].set(row);
+                }
+            }
+        }
+        return new ProductCatalogSnapshot(nextProducts, ids, nextPrices, nextStocks, categoryIds, foldedNames,
+                nextOrders, facetRows, nextInStock, nextPriceBuckets);
+    }
+
+    // Fields that feed the name filter, category column, facets and date orders
+    private static boolean sameIndexedValues(Product current, Product changed) {
+        return Objects.equals(current.getName(), changed.getName())
+                && Objects.equals(current.getCategoryId(), changed.getCategoryId())
+                && Objects.equals(current.getSize(), changed.getSize())
+                && Objects.equals(current.getColor(), changed.getColor())
+                && Objects.equals(current.getMaterial(), changed.getMaterial())
+                && Objects.equals(current.getAgeRange(), changed.getAgeRange())
+                && Objects.equals(current.getCreatedAt(), changed.getCreatedAt())
+                && Objects.equals(current.getUpdatedAt(), changed.getUpdatedAt());
+    }
+
+    /**
+     * Order with the moved rows taken out and merged back at their new positions:
+     * linear in the number of rows instead of a full sort. Ties stay ordered by id.
+     */
+    private static int[] reordered(int[] order, List<Integer> movedRows, Comparator<Integer> byKey) {
+        Comparator<Integer> comparator = byKey.thenComparingInt(i -> i);
+        Integer[] moved = movedRows.toArray(new Integer[0]);
+        Arrays.sort(moved, comparator);
+        Set<Integer> movedSet = Set.of(moved);
+
+        int[] result = new int[order.length];
+        int r = 0;
+        int m = 0;
+        for (int row : order) {
+            if (movedSet.contains(row)) {
+                continue;
+            }
+            while (m < moved.length && comparator.compare(moved[m], row) < 0) {
+                result[r++] = moved[m++];
+            }
+            result[r++] = row;
+        }
+        while (m < moved.length) {
+            result[r++] = moved[m++];
+        }
+        return result;
+    }
+
+    // Index of the price facet bucket holding a price in minor units, -1 below the first bound
+    private static int priceBucket(long priceMinor) {
+        for (int b = PRICE_BUCKET_BOUNDS.length - 1; b >= 0; b--) {
+            if (priceMinor >= PRICE_BUCKET_BOUNDS[b] * 100) {
+                return b;
+            }
+        }
+        return -1;
+    }
+
+    int size() {
+        return products.length;
+    }
+
+    boolean canSort(Sort sort) {
+        if (sort.isUnsorted()) {
+            return true;
+        }
+        List<Sort.Order> orders = sort.toList();
+        return orders.size() == 1 && sortOrders.containsKey(orders.get(0).getProperty());
+    }
+
+    /**
+     * Same semantics as ProductRepository.findProductsWithFilters, answered from the arrays.
+     * Caller must check canSort(pageable.getSort()) first.
+     */
+    Page<Product> query(String name, Long categoryId, BigDecimal minPrice, BigDecimal maxPrice,
+                        Boolean inStock, Pageable pageable) {
+        RowFilter filter = new RowFilter(name, categoryId, minPrice, maxPrice, inStock);
+
+        int[] order = sortOrders.get("id");
+        boolean descending = false;
+        if (pageable.getSort().isSorted()) {
+            Sort.Order sortOrder = pageable.getSort().toList().get(0);
+            order = sortOrders.get(sortOrder.getProperty());
+            descending = sortOrder.isDescending();
+        }
+
+        long offset = pageable.isPaged() ? pageable.getOffset() : 0;
+        int limit = pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE;
+        List<Product> content = new ArrayList<>(Math.min(limit, products.length));
+        long total = 0;
+
+        for (int k = 0; k < order.length; k++) {
+            int i = descending ? order[order.length - 1 - k] : order[k];
+            if (!filter.matches(i)) continue;
+
+            if (total >= offset && content.size() < limit) {
+                content.add(products[i]);
+            }
+            total++;
+        }
+
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * Keyset variant of query: matching rows strictly after the cursor's (sortKey, id)
+     * in the requested order, located by binary search instead of skipping an offset.
+     * A null cursor starts from the first row. sortField must be one of KEYSET_SORTS.
+     */
+    Slice<Product> queryAfter(String name, Long categoryId, BigDecimal minPrice, BigDecimal maxPrice,
+                              Boolean inStock, String sortField, boolean descending,
+                              KeysetCursor after, int size) {
+        RowFilter filter = new RowFilter(name, categoryId, minPrice, maxPrice, inStock);
+        int[] order = sortOrders.get(sortField);
+        IntUnaryOperator toCursor = after != null ? cursorComparison(sortField, after) : null;
+
+        List<Product> content = new ArrayList<>(size);
+        boolean hasNext = false;
+        if (!descending) {
+            int start = toCursor != null ? firstPosition(order, i -> toCursor.applyAsInt(i) > 0) : 0;
+            for (int k = start; k < order.length; k++) {
+                if (!filter.matches(order[k])) continue;
+                if (content.size() == size) { hasNext = true; break; }
+                content.add(products[order[k]]);
+            }
+        } else {
+            int start = toCursor != null ? firstPosition(order, i -> toCursor.applyAsInt(i) >= 0) - 1 : order.length - 1;
+            for (int k = start; k >= 0; k--) {
+                if (!filter.matches(order[k])) continue;
+                if (content.size() == size) { hasNext = true; break; }
+                content.add(products[order[k]]);
+            }
+        }
+        return new SliceImpl<>(content, PageRequest.of(0, size), hasNext);
+    }
+
+    /**
+     * Facet counts for the same filters as query. Each facet ignores its own filter
+     * (category counts ignore categoryId, price buckets ignore min/maxPrice).
+     */
+    ProductFacets facets(String name, Long categoryId, BigDecimal minPrice, BigDecimal maxPrice, Boolean inStock) {
+        RowFilter filter = new RowFilter(name, categoryId, minPrice, maxPrice, inStock);
+
+        BitSet base = new BitSet(products.length);
+        base.set(0, products.length);
+        if (filter.onlyInStock) {
+            base.and(inStockRows);
+        }
+        if (filter.needle != null) {
+            for (int i = base.nextSetBit(0); i >= 0; i = base.nextSetBit(i + 1)) {
+                if (!foldedNames[i].contains(filter.needle)) {
+                    base.clear(i);
+                }
+            }
+        }
+        BitSet categoryRows = categoryId != null
+                ? facetRows.get("categoryId").getOrDefault(String.valueOf(categoryId), new BitSet())
+                : null;
+        BitSet priceRows = minPrice != null || maxPrice != null
+                ? rowsInPriceRange(filter.minMinor, filter.maxMinor)
+                : null;
+
+        BitSet matching = intersect(base, categoryRows, priceRows);
+        ProductFacets facets = new ProductFacets();
+        facets.setTotal(matching.cardinality());
+        facets.setCategories(valueCounts("categoryId", intersect(base, priceRows, null)));
+        facets.setSizes(valueCounts("size", matching));
+        facets.setColors(valueCounts("color", matching));
+        facets.setMaterials(valueCounts("material", matching));
+        facets.setAgeRanges(valueCounts("ageRange", matching));
+
+        BitSet withoutPrice = intersect(base, categoryRows, null);
+        List<ProductFacets.PriceRangeCount> priceRanges = new ArrayList<>(PRICE_BUCKET_BOUNDS.length);
+        for (int b = 0; b < PRICE_BUCKET_BOUNDS.length; b++) {
+            BigDecimal upper = b + 1 < PRICE_BUCKET_BOUNDS.length ? BigDecimal.valueOf(PRICE_BUCKET_BOUNDS[b + 1]) : null;
+            priceRanges.add(new ProductFacets.PriceRangeCount(BigDecimal.valueOf(PRICE_BUCKET_BOUNDS[b]), upper,
+                    intersectionCount(withoutPrice, priceBucketRows[b])));
+        }
+        facets.setPriceRanges(priceRanges);
+        return facets;
+    }
+
+    // Non-empty values of one facet, most frequent first
+    private List<ProductFacets.FacetCount> valueCounts(String facet, BitSet rows) {
+        List<ProductFacets.FacetCount> counts = new ArrayList<>();
+        for (Map.Entry<String, BitSet> entry : facetRows.get(facet).entrySet()) {
+            int count = intersectionCount(rows, entry.getValue());
+            if (count > 0) {
+                counts.add(new ProductFacets.FacetCount(entry.getKey(), count));
+            }
+        }
+        counts.sort(Comparator.comparingLong(ProductFacets.FacetCount::getCount).reversed());
+        return counts;
+    }
+
+    private Map<String, BitSet> rowsByValue(IntFunction<String> valueOf) {
+        Map<String, BitSet> rows = new TreeMap<>();
+        for (int i = 0; i < products.length; i++) {
+            String value = valueOf.apply(i);
+            if (value == null || value.isBlank()) continue;
+            rows.computeIfAbsent(value.trim(), v -> new BitSet(products.length)).set(i);
+        }
+        return rows;
+    }
+
+    // Rows with minMinor <= price <= maxMinor, located by binary search on the price order
+    private BitSet rowsInPriceRange(long minMinor, long maxMinor) {
+        int[] order = sortOrders.get("price");
+        int from = firstPosition(order, i -> prices[i] >= minMinor);
+        int to = firstPosition(order, i -> prices[i] > maxMinor);
+        BitSet rows = new BitSet(products.length);
+        for (int k = from; k < to; k++) {
+            rows.set(order[k]);
+        }
+        return rows;
+    }
+
+    private static BitSet intersect(BitSet base, BitSet first, BitSet second) {
+        BitSet result = (BitSet) base.clone();
+        if (first != null) result.and(first);
+        if (second != null) result.and(second);
+        return result;
+    }
+
+    private static int intersectionCount(BitSet a, BitSet b) {
+        BitSet both = (BitSet) a.clone();
+        both.and(b);
+        return both.cardinality();
+    }
+
+    // Compares a row with the cursor position: negative if the row sorts before it
+    private IntUnaryOperator cursorComparison(String sortField, KeysetCursor cursor) {
+        long afterId = cursor.getId();
+        switch (sortField) {
+            case "price": {
+                long afterPrice = toMinorUnits(cursor.getValueAsDecimal());
+                return i -> {
+                    int byKey = Long.compare(prices[i], afterPrice);
+                    return byKey != 0 ? byKey : Long.compare(ids[i], afterId);
+                };
+            }
+            case "createdAt": {
+                LocalDateTime afterCreatedAt = cursor.getValueAsDateTime();
+                Comparator<LocalDateTime> nullsFirst = Comparator.nullsFirst(Comparator.naturalOrder());
+                return i -> {
+                    int byKey = nullsFirst.compare(products[i].getCreatedAt(), afterCreatedAt);
+                    return byKey != 0 ? byKey : Long.compare(ids[i], afterId);
+                };
+            }
+            default:
+                return i -> Long.compare(ids[i], afterId);
+        }
+    }
+
+    // Binary search: first position in order whose row satisfies a predicate that is monotonic along order
+    private static int firstPosition(int[] order, IntPredicate predicate) {
+        int lo = 0;
+        int hi = order.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (predicate.test(order[mid])) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+
+    private int[] sortedBy(Comparator<Integer> comparator) {
+        Integer[] boxed = new Integer[products.length];
+        for (int i = 0; i < boxed.length; i++) {
+            boxed[i] = i;
+        }
+        // rows are already in id order, and the sort is stable, so ties stay ordered by id
+        Arrays.sort(boxed, comparator);
+        int[] result = new int[boxed.length];
+        for (int i = 0; i < boxed.length; i++) {
+            result[i] = boxed[i];
+        }
+        return result;
+    }
+
+    private final class RowFilter {
+        private final String needle;
+        private final Long categoryId;
+        private final long minMinor;
+        private final long maxMinor;
+        private final boolean onlyInStock;
+
+        RowFilter(String name, Long categoryId, BigDecimal minPrice, BigDecimal maxPrice, Boolean inStock) {
+            this.needle = name != null ? VietnameseTextUtil.fold(name) : null;
+            this.categoryId = categoryId;
+            this.minMinor = minPrice != null ? minPrice.movePointRight(2).setScale(0, RoundingMode.CEILING).longValue() : Long.MIN_VALUE;
+            this.maxMinor = maxPrice != null ? maxPrice.movePointRight(2).setScale(0, RoundingMode.FLOOR).longValue() : Long.MAX_VALUE;
+            this.onlyInStock = Boolean.TRUE.equals(inStock);
+        }
+
+        boolean matches(int i) {
+            if (categoryId != null && categoryIds[i] != categoryId) return false;
+            if (prices[i] < minMinor || prices[i] > maxMinor) return false;
+            if (onlyInStock && stocks[i] <= 0) return false;
+            return needle == null || foldedNames[i].contains(needle);
+        }
+    }
+
+    private static boolean isListed(Product product) {
+        return product.getId() != null
+                && product.getPrice() != null
+                && !Boolean.FALSE.equals(product.getIsActive());
+    }
+
+    private static long toMinorUnits(BigDecimal price) {
+        return price.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+
+    /**
+     * Detached copy, so the snapshot never shares instances with a persistence context.
+     */
+    static Product copyOf(Product source) {
+        Product copy = new Product();
+        copy.setId(source.getId());
+        copy.setName(source.getName());
+        copy.setDescription(source.getDescription());
+        copy.setPrice(source.getPrice());
+        copy.setImageUrl(source.getImageUrl());
+        copy.setStock(source.getStock());
+        copy.setSize(source.getSize());
+        copy.setColor(source.getColor());
+        copy.setMaterial(source.getMaterial());
+        copy.setAgeRange(source.getAgeRange());
+        copy.setIsFeatured(source.getIsFeatured());
+        copy.setIsActive(source.getIsActive());
+        copy.setCategoryId(source.getCategoryId());
+        copy.setStockQuantity(source.getStockQuantity());
+        copy.setCreatedAt(source.getCreatedAt());
+        copy.setUpdatedAt(source.getUpdatedAt());
+        return copy;
+    }
+}
@@ -0,0 +1,26 @@
+package com.gaubong.teddybearshop.service;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Published by ProductService whenever products are created, updated, deleted
+ * or their stock changes. Listeners receive it after the surrounding transaction
+ * commits, so in-memory read models never see rolled-back data.
+ */
+public class ProductChangedEvent {
+
+    private final Set<Long> productIds;
+
+    public ProductChangedEvent(Collection<Long> productIds) {
+        this.productIds = Set.copyOf(productIds);
+    }
+
+    public static ProductChangedEvent of(Long productId) {
+        return new ProductChangedEvent(Set.of(productId));
+    }
+
+    public Set<Long> getProductIds() {
+        return productIds;
+    }
+}
@@ -0,0 +1,412 @@
+package com.gaubong.teddybearshop.service;
+
+import com.gaubong.teddybearshop.entity.Product;
+import com.gaubong.teddybearshop.util.VietnameseTextUtil;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process inverted index over product name, description, size, material and color.
+ * Text is diacritic-folded ("gau bong" matches "Gấu Bông"), postings are
+ * delta + varint encoded, and results are ranked with BM25.
+ * Kept up to date by ProductCatalogService after each committed product change.
+ */
+@Component
+public class ProductSearchIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // Name matches count three times as much as the other fields
+    private static final int NAME_WEIGHT = 3;
+
+    // Upper bound on dictionary terms a prefix can expand to, keeps latency bounded
+    private static final int MAX_PREFIX_EXPANSION = 50;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Sorted dictionary so the last query token can be prefix-expanded
+    private final TreeMap<String, PostingList> postings = new TreeMap<>();
+    private final Map<Long, Integer> docByProductId = new HashMap<>();
+    private final List<Product> products = new ArrayList<>();
+    private final List<String[]> docTerms = new ArrayList<>();
+    private int[] docLengths = new int[64];
+    private long totalLength = 0;
+    private volatile boolean ready = false;
+
+    public void rebuild(Collection<Product> source) {
+        lock.writeLock().lock();
+        try {
+            reset(source);
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void update(Collection<Product> upserts, Collection<Long> removedIds) {
+        lock.writeLock().lock();
+        try {
+            for (Long id : removedIds) {
+                removeDocument(id);
+            }
+            for (Product product : upserts) {
+                Integer doc = docByProductId.get(product.getId());
+                if (doc != null && sameIndexedText(products.get(doc), product)) {
+                    // Price or stock change only: postings are unaffected
+                    products.set(doc, ProductCatalogSnapshot.copyOf(product));
+                    continue;
+                }
+                removeDocument(product.getId());
+                addDocument(product);
+            }
+            if (products.size() > 2 * docByProductId.size() + 64) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Ranked search. Every query token must match a term exactly, except the
+     * last one which also matches as a prefix (for search-as-you-type); products
+     * missing any token are not returned, as with the old name-contains search.
+     * Empty when the index has not been built yet.
+     */
+    public Optional<Page<Product>> search(String query, Pageable pageable) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        List<String> tokens = VietnameseTextUtil.tokenize(query);
+        if (tokens.isEmpty()) {
+            return Optional.of(Page.empty(pageable));
+        }
+
+        lock.readLock().lock();
+        try {
+            double[] scores = score(tokens, true, true);
+            if (scores == null) {
+                return Optional.of(Page.empty(pageable));
+            }
+            int matched = 0;
+            for (double score : scores) {
+                if (score > 0) {
+                    matched++;
+                }
+            }
+
+            List<Product> content = topDocuments(scores, pageable);
+            return Optional.of(new PageImpl<>(content, pageable, matched));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Best products for free text such as a chat message: tokens match exactly
+     * (no prefix expansion) and products scoring below minScore are dropped, so
+     * words every product shares ("gau", "bong") do not pull in the whole catalog.
+     * Empty when the index has not been built yet or nothing is relevant.
+     */
+    public List<Product> match(String text, int limit, double minScore) {
+        List<String> tokens = VietnameseTextUtil.tokenize(text);
+        if (!ready || tokens.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            double[] scores = score(tokens, false, false);
+            if (scores == null) {
+                return List.of();
+            }
+            for (int doc = 0; doc < scores.length; doc++) {
+                if (scores[doc] < minScore) {
+                    scores[doc] = 0;
+                }
+            }
+            return topDocuments(scores, PageRequest.of(0, limit));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // BM25 score per doc slot, or null when the index is empty. With requireAll, docs
+    // missing any query token score 0. Caller holds the read lock.
+    private double[] score(List<String> tokens, boolean prefixLast, boolean requireAll) {
+        int liveDocs = docByProductId.size();
+        if (liveDocs == 0) {
+            return null;
+        }
+        double avgLength = (double) totalLength / liveDocs;
+        double[] scores = new double[products.size()];
+        // Query tokens each doc matched; a prefix token expanding to several terms counts once
+        int[] matchedTokens = requireAll ? new int[products.size()] : null;
+        int[] lastToken = requireAll ? new int[products.size()] : null;
+        if (requireAll) {
+            Arrays.fill(lastToken, -1);
+        }
+
+        for (int t = 0; t < tokens.size(); t++) {
+            String token = tokens.get(t);
+            boolean prefix = prefixLast && t == tokens.size() - 1;
+            for (PostingList list : termsFor(token, prefix)) {
+                double idf = Math.log(1 + (liveDocs - list.size + 0.5) / (list.size + 0.5));
+                PostingList.Cursor cursor = list.cursor();
+                while (cursor.next()) {
+                    int doc = cursor.doc;
+                    double tf = cursor.freq;
+                    double norm = K1 * (1 - B + B * docLengths[doc] / avgLength);
+                    scores[doc] += idf * (tf * (K1 + 1)) / (tf + norm);
+                    if (requireAll && lastToken[doc] != t) {
+                        lastToken[doc] = t;
+                        matchedTokens[doc]++;
+                    }
+                }
+            }
+        }
+        if (requireAll) {
+            for (int doc = 0; doc < scores.length; doc++) {
+                if (matchedTokens[doc] < tokens.size()) {
+                    scores[doc] = 0;
+                }
+            }
+        }
+        return scores;
+    }
+
+    private List<PostingList> termsFor(String token, boolean prefix) {
+        if (!prefix) {
+            PostingList list = postings.get(token);
+            return list != null ? List.of(list) : List.of();
+        }
+        List<PostingList> lists = new ArrayList<>();
+        for (PostingList list : postings.subMap(token, true, token + Character.MAX_VALUE, false).values()) {
+            lists.add(list);
+            if (lists.size() == MAX_PREFIX_EXPANSION) {
+                break;
+            }
+        }
+        return lists;
+    }
+
+    private List<Product> topDocuments(double[] scores, Pageable pageable) {
+        long offset = pageable.isPaged() ? pageable.getOffset() : 0;
+        int wanted = pageable.isPaged() ? (int) Math.min(Integer.MAX_VALUE, offset + pageable.getPageSize()) : scores.length;
+
+        // Min-heap holding the best `wanted` documents; ties go to the lower product id
+        Comparator<Integer> worstFirst = (a, b) -> {
+            int byScore = Double.compare(scores[a], scores[b]);
+            return byScore != 0 ? byScore : Long.compare(products.get(b).getId(), products.get(a).getId());
+        };
+        PriorityQueue<Integer> heap = new PriorityQueue<>(worstFirst);
+        for (int doc = 0; doc < scores.length; doc++) {
+            if (scores[doc] <= 0) continue;
+            heap.offer(doc);
+            if (heap.size() > wanted) {
+                heap.poll();
+            }
+        }
+
+        Integer[] ranked = heap.toArray(new Integer[0]);
+        Arrays.sort(ranked, worstFirst.reversed());
+        List<Product> content = new ArrayList<>();
+        for (int i = (int) Math.min(offset, ranked.length); i < ranked.length; i++) {
+            content.add(products.get(ranked[i]));
+        }
+        return content;
+    }
+
+    private void addDocument(Product product) {
+        if (product.getId() == null || Boolean.FALSE.equals(product.getIsActive())) {
+            return;
+        }
+        Map<String, Integer> frequencies = new LinkedHashMap<>();
+        addTokens(frequencies, product.getName(), NAME_WEIGHT);
+        addTokens(frequencies, product.getDescription(), 1);
+        addTokens(frequencies, product.getSize(), 1);
+        addTokens(frequencies, product.getMaterial(), 1);
+        addTokens(frequencies, product.getColor(), 1);
+
+        int doc = products.size();
+        products.add(ProductCatalogSnapshot.copyOf(product));
+        docTerms.add(frequencies.keySet().toArray(new String[0]));
+        docByProductId.put(product.getId(), doc);
+
+        int length = 0;
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            // New documents always get the highest doc number, so appending keeps postings sorted
+            postings.computeIfAbsent(entry.getKey(), k -> new PostingList()).append(doc, entry.getValue());
+            length += entry.getValue();
+        }
+        if (doc >= docLengths.length) {
+            docLengths = Arrays.copyOf(docLengths, docLengths.length * 2);
+        }
+        docLengths[doc] = length;
+        totalLength += length;
+    }
+
+    private void removeDocument(Long productId) {
+        Integer doc = docByProductId.remove(productId);
+        if (doc == null) {
+            return;
+        }
+        for (String term : docTerms.get(doc)) {
+            PostingList list = postings.get(term);
+            if (list != null && list.remove(doc) && list.size == 0) {
+                postings.remove(term);
+            }
+        }
+        totalLength -= docLengths[doc];
+        docLengths[doc] = 0;
+        docTerms.set(doc, new String[0]);
+        // The slot stays as a tombstone until the index is compacted
+        products.set(doc, null);
+    }
+
+    private static void addTokens(Map<String, Integer> frequencies, String text, int weight) {
+        for (String token : VietnameseTextUtil.tokenize(text)) {
+            frequencies.merge(token, weight, Integer::sum);
+        }
+    }
+
+    private void compact() {
+        List<Product> live = new ArrayList<>(docByProductId.size());
+        for (Product product : products) {
+            if (product != null) {
+                live.add(product);
+            }
+        }
+        reset(live);
+    }
+
+    private void reset(Collection<Product> source) {
+        postings.clear();
+        docByProductId.clear();
+        products.clear();
+        docTerms.clear();
+        docLengths = new int[Math.max(64, source.size())];
+        totalLength = 0;
+        for (Product product : source) {
+            addDocument(product);
+        }
+    }
+
+    private static boolean sameIndexedText(Product indexed, Product changed) {
+        return !Boolean.FALSE.equals(changed.getIsActive())
+                && Objects.equals(indexed.getName(), changed.getName())
+                && Objects.equals(indexed.getDescription(), changed.getDescription())
+                && Objects.equals(indexed.getSize(), changed.getSize())
+                && Objects.equals(indexed.getMaterial(), changed.getMaterial())
+                && Objects.equals(indexed.getColor(), changed.getColor());
+    }
+
+    /**
+     * Sorted (doc, freq) pairs stored as varint-encoded doc gaps followed by the frequency.
+     */
+    static final class PostingList {
+        private byte[] data = new byte[8];
+        private int length = 0;
+        private int size = 0;
+        private int lastDoc = -1;
+
+        void append(int doc, int freq) {
+            ensureCapacity(10);
+            writeVarint(lastDoc < 0 ? doc : doc - lastDoc);
+            writeVarint(freq);
+            lastDoc = doc;
+            size++;
+        }
+
+        boolean remove(int doc) {
+            PostingList rebuilt = new PostingList();
+            boolean found = false;
+            Cursor cursor = cursor();
+            while (cursor.next()) {
+                if (cursor.doc == doc) {
+                    found = true;
+                } else {
+                    rebuilt.append(cursor.doc, cursor.freq);
+                }
+            }
+            if (found) {
+                data = rebuilt.data;
+                length = rebuilt.length;
+                size = rebuilt.size;
+                lastDoc = rebuilt.lastDoc;
+            }
+            return found;
+        }
+
+        Cursor cursor() {
+            return new Cursor();
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + extra));
+            }
+        }
+
+        private void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+
+        final class Cursor {
+            private int position = 0;
+            private boolean started = false;
+            int doc = 0;
+            int freq = 0;
+
+            boolean next() {
+                if (position >= length) {
+                    return false;
+                }
+                int gap = readVarint();
+                doc = started ? doc + gap : gap;
+                started = true;
+                freq = readVarint();
+                return true;
+            }
+
+            private int readVarint() {
+                int value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[position++];
+                    value |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                return value;
+            }
+        }
+    }
+}
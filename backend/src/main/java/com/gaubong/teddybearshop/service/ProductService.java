@@ -1,14 +1,27 @@
 package com.gaubong.teddybearshop.service;
 
+import com.gaubong.teddybearshop.dto.CursorSlice;
+import com.gaubong.teddybearshop.dto.ProductFacets;
 import com.gaubong.teddybearshop.entity.Product;
+import com.gaubong.teddybearshop.exception.InsufficientStockException;
 import com.gaubong.teddybearshop.repository.ProductRepository;
+import com.gaubong.teddybearshop.repository.ProductRepositoryCustom.StockUpdate;
+import com.gaubong.teddybearshop.util.KeysetCursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -17,6 +30,18 @@ public class ProductService {
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private ProductCatalogService productCatalogService;
+
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     public List<Product> getAllProducts() {
         return productRepository.findAll();
     }
@@ -25,16 +50,26 @@ public class ProductService {
         return productRepository.findAll(pageable);
     }
 
+    // Served from ProductCache; the returned product is a detached copy
     public Optional<Product> getProductById(Long id) {
-        return productRepository.findById(id);
+        return productCache.get(id);
+    }
+
+    public List<Product> getProductsByIds(Collection<Long> ids) {
+        return productRepository.findAllById(ids);
     }
 
     public List<Product> searchProductsByName(String name) {
-        return productRepository.findByNameContainingIgnoreCase(name);
+        return productSearchIndex.search(name, Pageable.unpaged())
+                .map(Page::getContent)
+                .orElseGet(() -> productRepository.findByNameContainingIgnoreCase(name));
     }
 
+    // Ranked full-text search over name, description, material and color;
+    // the LIKE query is only used until the index has been built
     public Page<Product> searchProductsByName(String name, Pageable pageable) {
-        return productRepository.findByNameContainingIgnoreCase(name, pageable);
+        return productSearchIndex.search(name, pageable)
+                .orElseGet(() -> productRepository.findByNameContainingIgnoreCase(name, pageable));
     }
 
     public List<Product> getProductsByCategory(Long categoryId) {
@@ -52,17 +87,69 @@ public class ProductService {
     public Page<Product> getProductsWithFilters(String name, Long categoryId, 
                                                BigDecimal minPrice, BigDecimal maxPrice, 
                                                Boolean inStock, Pageable pageable) {
-        return productRepository.findProductsWithFilters(name, categoryId, minPrice, maxPrice, inStock, pageable);
+        return productCatalogService.findProducts(name, categoryId, minPrice, maxPrice, inStock, pageable)
+                .orElseGet(() -> productRepository.findProductsWithFilters(
+                        name, categoryId, minPrice, maxPrice, inStock, pageable));
+    }
+
+    /**
+     * Keyset (cursor) listing with the same filters as getProductsWithFilters.
+     * cursor is null or empty for the first page.
+     */
+    public CursorSlice<Product> getProductsWithFiltersAfter(String name, Long categoryId,
+                                                           BigDecimal minPrice, BigDecimal maxPrice,
+                                                           Boolean inStock, String sortBy, boolean descending,
+                                                           String cursor, int size) {
+        if (!ProductCatalogService.supportsKeysetSort(sortBy)) {
+            throw new IllegalArgumentException("Cursor paging is not supported for sort: " + sortBy);
+        }
+        String sortKey = sortBy + (descending ? ",desc" : ",asc");
+        KeysetCursor after = cursor == null || cursor.isEmpty() ? null : KeysetCursor.decode(cursor, sortKey);
+
+        Slice<Product> slice = productCatalogService.findProductsAfter(
+                name, categoryId, minPrice, maxPrice, inStock, sortBy, descending, after, size)
+                .orElseGet(() -> {
+                    if (!"id".equals(sortBy) || descending) {
+                        throw new IllegalStateException("Product catalog is still loading, retry shortly");
+                    }
+                    Long afterId = after != null ? after.getId() : 0L;
+                    return productRepository.findProductsWithFiltersAfterId(
+                            name, categoryId, minPrice, maxPrice, inStock, afterId, PageRequest.of(0, size));
+                });
+
+        String nextCursor = null;
+        if (slice.hasNext()) {
+            Product last = slice.getContent().get(slice.getNumberOfElements() - 1);
+            Object sortValue = "price".equals(sortBy) ? last.getPrice()
+                    : "createdAt".equals(sortBy) ? last.getCreatedAt()
+                    : last.getId();
+            nextCursor = KeysetCursor.encode(sortKey, sortValue, last.getId());
+        }
+        return new CursorSlice<>(slice.getContent(), size, slice.hasNext(), nextCursor);
+    }
+
+    /**
+     * Facet counts for the listing filters. Only served from the in-memory catalog,
+     * a GROUP BY per facet against MySQL is exactly what this avoids.
+     */
+    public ProductFacets getProductFacets(String name, Long categoryId,
+                                          BigDecimal minPrice, BigDecimal maxPrice, Boolean inStock) {
+        return productCatalogService.getFacets(name, categoryId, minPrice, maxPrice, inStock)
+                .orElseThrow(() -> new IllegalStateException("Product catalog is still loading, retry shortly"));
     }
 
     public List<Long> getAllCategories() {
         return productRepository.findAllCategories();
     }
 
+    @Transactional
     public Product createProduct(Product product) {
-        return productRepository.save(product);
+        Product savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.of(savedProduct.getId()));
+        return savedProduct;
     }
 
+    @Transactional
     public Product updateProduct(Long id, Product productDetails) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
@@ -77,46 +164,140 @@ public class ProductService {
         product.setColor(productDetails.getColor());
         product.setMaterial(productDetails.getMaterial());
 
-        return productRepository.save(product);
+        Product savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.of(id));
+        return savedProduct;
     }
 
+    @Transactional
     public Product updateProductStock(Long id, Integer newStock) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
 
         product.setStock(newStock);
-        return productRepository.save(product);
+        Product savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.of(id));
+        return savedProduct;
     }
 
-    public Product decreaseStock(Long id, Integer quantity) {
-        Product product = productRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
+    @Transactional
+    public void decreaseStock(Long id, Integer quantity) {
+        decreaseStock(Map.of(id, quantity));
+    }
+
+    /**
+     * Take stock for all lines at once with a conditional UPDATE per product, sent as one JDBC batch.
+     * No read-modify-write, so concurrent checkouts can neither lose updates nor oversell.
+     * Throws InsufficientStockException listing every short line; the transaction then rolls back.
+     */
+    @Transactional
+    public void decreaseStock(Map<Long, Integer> quantities) {
+        decreaseStock(quantities, null);
+    }
+
+    // stockBefore: stock of rows this transaction holds FOR UPDATE, used to verify lines
+    // the driver reported without a row count; without it such lines fail the update
+    private void decreaseStock(Map<Long, Integer> quantities, Map<Long, Integer> stockBefore) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        StockUpdate update = productRepository.decreaseStockIfAvailable(quantities);
+        List<Long> shortIds = update.getShortIds();
+        if (!update.getUnverifiedIds().isEmpty()) {
+            verifyStockTaken(update.getUnverifiedIds(), quantities, stockBefore);
+        }
+        if (!shortIds.isEmpty()) {
+            Map<Long, Product> found = new HashMap<>();
+            for (Product product : productRepository.findAllById(shortIds)) {
+                found.put(product.getId(), product);
+            }
+            throw insufficientStock(shortIds, found, quantities);
+        }
+        eventPublisher.publishEvent(new ProductChangedEvent(quantities.keySet()));
+    }
 
-        if (product.getStock() < quantity) {
-            throw new RuntimeException("Insufficient stock for product: " + product.getName());
+    /**
+     * Checkout path: lock every product of the order with one SELECT ... FOR UPDATE (ascending id),
+     * check all lines against the locked rows, then take the stock with decreaseStock.
+     * Returns the locked products by id; their prices are what the order is charged.
+     */
+    @Transactional
+    public Map<Long, Product> reserveStock(Map<Long, Integer> quantities) {
+        Map<Long, Product> locked = new HashMap<>();
+        for (Product product : productRepository.findAllByIdForUpdate(quantities.keySet())) {
+            locked.put(product.getId(), product);
         }
+        List<Long> shortIds = new ArrayList<>();
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            Product product = locked.get(line.getKey());
+            if (product == null) {
+                throw new RuntimeException("Product not found: " + line.getKey());
+            }
+            if (product.getStock() == null || product.getStock() < line.getValue()) {
+                shortIds.add(line.getKey());
+            }
+        }
+        if (!shortIds.isEmpty()) {
+            throw insufficientStock(shortIds, locked, quantities);
+        }
+        Map<Long, Integer> stockBefore = new HashMap<>();
+        for (Product product : locked.values()) {
+            stockBefore.put(product.getId(), product.getStock());
+        }
+        decreaseStock(quantities, stockBefore);
+        return locked;
+    }
 
-        product.setStock(product.getStock() - quantity);
-        return productRepository.save(product);
+    // An unknown row count cannot prove stock was taken: re-read the locked rows and
+    // require exactly the ordered quantity to be gone, otherwise fail (and roll back) the update
+    private void verifyStockTaken(List<Long> ids, Map<Long, Integer> quantities, Map<Long, Integer> stockBefore) {
+        if (stockBefore == null || !stockBefore.keySet().containsAll(ids)) {
+            throw new IllegalStateException("Stock update could not be verified for products " + ids);
+        }
+        Map<Long, Integer> stockAfter = productRepository.findStockByIds(ids);
+        for (Long id : ids) {
+            Integer after = stockAfter.get(id);
+            if (after == null || after != stockBefore.get(id) - quantities.get(id)) {
+                throw new IllegalStateException("Stock update could not be verified for product " + id);
+            }
+        }
+    }
+
+    private static InsufficientStockException insufficientStock(List<Long> shortIds, Map<Long, Product> products,
+                                                                Map<Long, Integer> quantities) {
+        List<InsufficientStockException.ShortLine> lines = new ArrayList<>();
+        for (Long id : shortIds) {
+            Product product = products.get(id);
+            lines.add(new InsufficientStockException.ShortLine(id,
+                    product != null ? product.getName() : null,
+                    quantities.get(id),
+                    product != null && product.getStock() != null ? product.getStock() : 0));
+        }
+        return new InsufficientStockException(lines);
     }
 
+    @Transactional
     public Product increaseStock(Long id, Integer quantity) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
 
         product.setStock(product.getStock() + quantity);
-        return productRepository.save(product);
+        Product savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.of(id));
+        return savedProduct;
     }
 
+    @Transactional
     public void deleteProduct(Long id) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
 
         productRepository.delete(product);
+        eventPublisher.publishEvent(ProductChangedEvent.of(id));
     }
 
     public boolean isProductAvailable(Long id, Integer quantity) {
-        Optional<Product> productOpt = productRepository.findById(id);
+        Optional<Product> productOpt = productCache.get(id);
         if (productOpt.isPresent()) {
             Product product = productOpt.get();
             return product.getStock() >= quantity;
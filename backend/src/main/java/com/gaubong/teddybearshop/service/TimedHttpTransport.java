@@ -0,0 +1,146 @@
+package com.gaubong.teddybearshop.service;
+
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GET-only transport for Google's certificate fetch that keeps our own timeouts.
+ * NetHttpTransport cannot: HttpRequest always overwrites the connection's
+ * timeouts with its 20 s defaults, whatever the connection factory set.
+ */
+class TimedHttpTransport extends HttpTransport {
+
+    private final int connectTimeoutMs;
+    private final int readTimeoutMs;
+
+    TimedHttpTransport(int connectTimeoutMs, int readTimeoutMs) {
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.readTimeoutMs = readTimeoutMs;
+    }
+
+    @Override
+    public boolean supportsMethod(String method) {
+        return "GET".equals(method);
+    }
+
+    @Override
+    protected LowLevelHttpRequest buildRequest(String method, String url) throws IOException {
+        if (!supportsMethod(method)) {
+            throw new IllegalArgumentException("Unsupported HTTP method: " + method);
+        }
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(connectTimeoutMs);
+        connection.setReadTimeout(readTimeoutMs);
+        return new Request(connection);
+    }
+
+    private static final class Request extends LowLevelHttpRequest {
+        private final HttpURLConnection connection;
+
+        private Request(HttpURLConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            connection.addRequestProperty(name, value);
+        }
+
+        // Keep the timeouts set when the connection was opened
+        @Override
+        public void setTimeout(int connectTimeout, int readTimeout) {
+        }
+
+        @Override
+        public LowLevelHttpResponse execute() throws IOException {
+            connection.connect();
+            return new Response(connection);
+        }
+    }
+
+    private static final class Response extends LowLevelHttpResponse {
+        private final HttpURLConnection connection;
+        private final int statusCode;
+        private final List<String> headerNames = new ArrayList<>();
+        private final List<String> headerValues = new ArrayList<>();
+
+        private Response(HttpURLConnection connection) throws IOException {
+            this.connection = connection;
+            this.statusCode = connection.getResponseCode();
+            for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+                // The null key is the status line
+                if (header.getKey() != null) {
+                    for (String value : header.getValue()) {
+                        headerNames.add(header.getKey());
+                        headerValues.add(value);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            return statusCode >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        }
+
+        @Override
+        public String getContentEncoding() {
+            return connection.getContentEncoding();
+        }
+
+        @Override
+        public long getContentLength() {
+            return connection.getContentLengthLong();
+        }
+
+        @Override
+        public String getContentType() {
+            return connection.getContentType();
+        }
+
+        @Override
+        public String getStatusLine() {
+            return connection.getHeaderField(0);
+        }
+
+        @Override
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        @Override
+        public String getReasonPhrase() throws IOException {
+            return connection.getResponseMessage();
+        }
+
+        @Override
+        public int getHeaderCount() {
+            return headerNames.size();
+        }
+
+        @Override
+        public String getHeaderName(int index) {
+            return headerNames.get(index);
+        }
+
+        @Override
+        public String getHeaderValue(int index) {
+            return headerValues.get(index);
+        }
+
+        @Override
+        public void disconnect() {
+            connection.disconnect();
+        }
+    }
+}
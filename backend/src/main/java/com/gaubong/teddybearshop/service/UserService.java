@@ -2,9 +2,12 @@ package com.gaubong.teddybearshop.service;
 
 import com.gaubong.teddybearshop.entity.User;
 import com.gaubong.teddybearshop.repository.UserRepository;
+import com.gaubong.teddybearshop.security.PrincipalCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -12,7 +15,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Service
-public class UserService {
+public class UserService implements UserDetailsPasswordService {
 
     @Autowired
     private UserRepository userRepository;
@@ -20,6 +23,9 @@ public class UserService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
     public List<User> getAllUsers() {
         return userRepository.findAll();
     }
@@ -66,7 +72,9 @@ public class UserService {
             user.setPassword(passwordEncoder.encode(userDetails.getPassword()));
         }
 
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        principalCache.invalidate(saved.getUsername());
+        return saved;
     }
 
     public User updateUserRole(Long id, User.Role role) {
@@ -74,7 +82,9 @@ public class UserService {
                 .orElseThrow(() -> new RuntimeException("User not found with id: " + id));
 
         user.setRole(role);
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        principalCache.invalidate(saved.getUsername());
+        return saved;
     }
 
     public void deleteUser(Long id) {
@@ -82,6 +92,7 @@ public class UserService {
                 .orElseThrow(() -> new RuntimeException("User not found with id: " + id));
 
         userRepository.delete(user);
+        principalCache.invalidate(user.getUsername());
     }
 
     public boolean existsByUsername(String username) {
@@ -98,6 +109,22 @@ public class UserService {
         
         user.setPassword(passwordEncoder.encode(newPassword));
         userRepository.save(user);
+        principalCache.invalidate(user.getUsername());
+    }
+
+    /**
+     * Called by DaoAuthenticationProvider after a successful login when the stored
+     * hash uses a different BCrypt cost. newPassword is already encoded.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new RuntimeException("User not found with username: " + userDetails.getUsername()));
+
+        user.setPassword(newPassword);
+        User saved = userRepository.save(user);
+        principalCache.invalidate(saved.getUsername());
+        return saved;
     }
 
     public boolean checkPassword(Long id, String password) {
@@ -117,6 +144,8 @@ public class UserService {
     }
 
     public User updateUser(User user) {
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        principalCache.invalidate(saved.getUsername());
+        return saved;
     }
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+package com.gaubong.teddybearshop.util;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque continuation token for keyset (seek) pagination.
+ * Encodes the sort it was issued for plus the (sortKey, id) of the last row returned,
+ * so the next page can start with "WHERE (key, id) > (:key, :id)" instead of OFFSET.
+ * A null sort key (e.g. a product without createdAt) is encoded as an empty value.
+ */
+public class KeysetCursor {
+
+    private final String sort;
+    private final Long id;
+    private final String value;
+
+    private KeysetCursor(String sort, Long id, String value) {
+        this.sort = sort;
+        this.id = id;
+        this.value = value;
+    }
+
+    public static String encode(String sort, Object value, Long id) {
+        String plain = value == null ? ""
+                : value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : String.valueOf(value);
+        String raw = sort + "\n" + id + "\n" + plain;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a token; rejects tokens that are malformed or were issued for a different sort.
+     */
+    public static KeysetCursor decode(String token, String expectedSort) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\n", 3);
+            if (parts.length != 3 || !parts[0].equals(expectedSort)) {
+                throw new IllegalArgumentException("Cursor does not match sort " + expectedSort);
+            }
+            return new KeysetCursor(parts[0], Long.parseLong(parts[1]), parts[2].isEmpty() ? null : parts[2]);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + e.getMessage());
+        }
+    }
+
+    public String getSort() { return sort; }
+
+    public Long getId() { return id; }
+
+    /**
+     * Sort key of the last row, null when that row had no value for it.
+     */
+    public String getValue() { return value; }
+
+    public BigDecimal getValueAsDecimal() {
+        if (value == null) {
+            throw new IllegalArgumentException("Invalid cursor: missing sort value");
+        }
+        try {
+            return new BigDecimal(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sort key for a column that is never null (orders, chat messages): an empty
+     * value can only come from a malformed or forged token and is rejected.
+     */
+    public LocalDateTime getRequiredValueAsDateTime() {
+        if (value == null) {
+            throw new IllegalArgumentException("Invalid cursor: missing sort value");
+        }
+        return getValueAsDateTime();
+    }
+
+    public LocalDateTime getValueAsDateTime() {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.gaubong.teddybearshop.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+public class VietnameseTextUtil {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern TOKEN_SEPARATORS = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+    /**
+     * Lower-case and strip Vietnamese diacritics ("Gấu Bông" -> "gau bong").
+     * Mirrors the accent-insensitive utf8mb4_unicode_ci comparison MySQL does
+     * for LIKE, so in-memory matching agrees with the old database queries.
+     */
+    public static String fold(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        String stripped = COMBINING_MARKS.matcher(decomposed).replaceAll("");
+        return stripped
+                .replace('đ', 'd')
+                .replace('Đ', 'D')
+                .toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Fold and split into search tokens on anything that is not a letter or digit.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : TOKEN_SEPARATORS.split(fold(text))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Rough model token count for prompt budgeting. Vietnamese text with
+     * diacritics runs at about 3 characters per token.
+     */
+    public static int estimateTokens(String text) {
+        return text == null ? 0 : (text.length() + 2) / 3;
+    }
+}
@@ -0,0 +1,129 @@
+package com.gaubong.teddybearshop.controller;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * POST /chatbot/chat against a local OpenAI stub (openai.base-url): the reply is
+ * produced on the chat pool, and a saturated pool answers 503 with Retry-After.
+ */
+@SpringBootTest(properties = {"openai.chat.threads=1", "openai.chat.queue-capacity=1"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ChatbotControllerStubTest {
+
+    private static final MockWebServer openAi = new MockWebServer();
+
+    // Stub replies wait for this latch, so a test can hold the chat pool busy
+    private static volatile CountDownLatch release = new CountDownLatch(0);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @DynamicPropertySource
+    static void openAiStub(DynamicPropertyRegistry registry) throws IOException {
+        openAi.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest recorded) throws InterruptedException {
+                release.await(10, TimeUnit.SECONDS);
+                return completion("Chào bạn, shop có thể giúp gì cho bạn?");
+            }
+        });
+        openAi.start();
+        registry.add("openai.base-url", () -> openAi.url("/").toString());
+    }
+
+    @AfterEach
+    void releaseStub() {
+        release.countDown();
+    }
+
+    @AfterAll
+    static void stopStub() throws IOException {
+        openAi.shutdown();
+    }
+
+    @Test
+    void chatReplyCompletesOffTheServletThread() throws Exception {
+        release = new CountDownLatch(1);
+
+        MvcResult pending = mockMvc.perform(post("/chatbot/chat")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"message\":\"Shop mở cửa lúc mấy giờ vậy?\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // perform() returned while the stub is still holding the model's answer back
+        assertThat(release.getCount()).isEqualTo(1);
+        release.countDown();
+
+        mockMvc.perform(asyncDispatch(pending))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.botResponse").value("Chào bạn, shop có thể giúp gì cho bạn?"));
+        RecordedRequest recorded = openAi.takeRequest(5, TimeUnit.SECONDS);
+        assertThat(recorded.getPath()).isEqualTo("/v1/chat/completions");
+        assertThat(recorded.getHeader("Authorization")).isEqualTo("Bearer test-key");
+    }
+
+    @Test
+    void saturatedChatPoolAnswers503WithRetryAfter() throws Exception {
+        release = new CountDownLatch(1);
+
+        // One call runs on the single chat thread, one waits in the queue of one
+        MvcResult running = startChat("Shop có giao hàng buổi tối không?");
+        MvcResult queued = startChat("Shop có gói quà miễn phí không?");
+
+        MvcResult rejected = mockMvc.perform(post("/chatbot/chat")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"message\":\"Shop có bán thiệp chúc mừng không?\"}"))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(rejected))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "5"));
+
+        release.countDown();
+        mockMvc.perform(asyncDispatch(running)).andExpect(status().isOk());
+        mockMvc.perform(asyncDispatch(queued)).andExpect(status().isOk());
+    }
+
+    private MvcResult startChat(String message) throws Exception {
+        return mockMvc.perform(post("/chatbot/chat")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"message\":\"" + message + "\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+
+    private static MockResponse completion(String content) {
+        String body = "{\"id\":\"chatcmpl-test\",\"object\":\"chat.completion\",\"created\":1,\"model\":\"gpt-3.5-turbo\","
+                + "\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\"" + content + "\"},"
+                + "\"finish_reason\":\"stop\"}],\"usage\":{\"prompt_tokens\":1,\"completion_tokens\":1,\"total_tokens\":2}}";
+        return new MockResponse().setHeader("Content-Type", "application/json").setBody(body);
+    }
+}
@@ -0,0 +1,140 @@
+package com.gaubong.teddybearshop.controller;
+
+import com.gaubong.teddybearshop.entity.Cart;
+import com.gaubong.teddybearshop.entity.Product;
+import com.gaubong.teddybearshop.entity.User;
+import com.gaubong.teddybearshop.repository.CartRepository;
+import com.gaubong.teddybearshop.repository.ProductRepository;
+import com.gaubong.teddybearshop.repository.UserRepository;
+import com.gaubong.teddybearshop.security.JwtUtils;
+import com.gaubong.teddybearshop.service.CartService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.search.Search;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * GET /cart and POST /orders with app.query-budget.enforce on: both must stay
+ * within their @QueryBudget, JdbcTemplate writes included, and an N+1 makes
+ * the request fail instead of only logging a warning.
+ */
+@SpringBootTest(properties = "app.query-budget.enforce=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class QueryBudgetEnforcementTest {
+
+    private static final AtomicInteger customers = new AtomicInteger();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CartService cartService;
+
+    @SpyBean
+    private CartRepository cartRepository;
+
+    private User customer;
+    private String bearer;
+    private List<Product> products;
+
+    @BeforeEach
+    void seed() {
+        int n = customers.incrementAndGet();
+        customer = userRepository.save(new User("khach" + n, "khach" + n + "@test.vn", "x", "Khách " + n));
+        bearer = "Bearer " + jwtUtils.generateJwtToken(customer);
+
+        // Enough lines that a per-item query would show up in the count
+        products = new ArrayList<>();
+        Cart cart = cartService.getOrCreateCartForUser(customer);
+        for (int i = 1; i <= 5; i++) {
+            Product product = productRepository.save(new Product("Gấu bông " + n + "-" + i, "Gấu bông mềm",
+                    new BigDecimal("150000"), null, 50));
+            products.add(product);
+            cartService.addToCart(cart, product.getId(), 1);
+        }
+    }
+
+    @Test
+    void cartStaysWithinItsBudget() throws Exception {
+        double before = exceeded("GET /cart");
+
+        mockMvc.perform(get("/cart").header("Authorization", bearer))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalItems").value(5));
+
+        assertThat(exceeded("GET /cart")).isEqualTo(before);
+    }
+
+    @Test
+    void checkoutStaysWithinItsBudget() throws Exception {
+        StringBuilder lines = new StringBuilder();
+        for (Product product : products) {
+            lines.append(lines.length() == 0 ? "" : ",")
+                    .append("{\"productId\":").append(product.getId()).append(",\"quantity\":2}");
+        }
+        double before = exceeded("POST /orders");
+
+        mockMvc.perform(post("/orders").header("Authorization", bearer)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"orderItems\":[" + lines + "],"
+                                + "\"shippingAddress\":\"12 Lê Lợi, Quận 1\",\"phoneNumber\":\"0901234567\"}"))
+                .andExpect(status().isOk());
+
+        // Includes the batched stock UPDATE and order item INSERT, both written with JdbcTemplate
+        assertThat(exceeded("POST /orders")).isEqualTo(before);
+        assertThat(productRepository.findById(products.get(0).getId()).orElseThrow().getStock()).isEqualTo(48);
+    }
+
+    @Test
+    void cartLoadedWithoutItsEntityGraphFailsTheRequest() throws Exception {
+        // Simulates the regression: cart items and their products loaded lazily, one query each
+        doAnswer(invocation -> cartRepository.findByUser(invocation.getArgument(0)))
+                .when(cartRepository).findWithItemsByUser(any(User.class));
+        double before = exceeded("GET /cart");
+
+        mockMvc.perform(get("/cart").header("Authorization", bearer))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value(startsWith("Lỗi khi lấy giỏ hàng: Query budget exceeded for GET /cart")));
+
+        assertThat(exceeded("GET /cart")).isEqualTo(before + 1);
+    }
+
+    private double exceeded(String endpoint) {
+        return Search.in(meterRegistry).name("query.budget.exceeded").tag("endpoint", endpoint)
+                .counters().stream().mapToDouble(counter -> counter.count()).sum();
+    }
+}
@@ -0,0 +1,86 @@
+package com.gaubong.teddybearshop.controller;
+
+import com.gaubong.teddybearshop.entity.User;
+import com.gaubong.teddybearshop.repository.UserRepository;
+import com.gaubong.teddybearshop.security.JwtUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.oneOf;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * RateLimitFilter in the real security chain. The test profile turns rate
+ * limiting off, so it is re-enabled here with a small payment bucket.
+ */
+@SpringBootTest(properties = {
+        "app.rate-limit.enabled=true",
+        "app.rate-limit.payment.capacity=2",
+        "app.rate-limit.payment.refill-per-minute=1"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class RateLimitEnforcementTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void exhaustedBucketAnswers429WithRetryAfter() throws Exception {
+        mockMvc.perform(get("198.51.100.1", "/payment/methods")).andExpect(status().isOk());
+        mockMvc.perform(get("198.51.100.1", "/payment/methods")).andExpect(status().isOk());
+
+        mockMvc.perform(get("198.51.100.1", "/payment/methods"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", oneOf("59", "60")))
+                .andExpect(jsonPath("$.error").value("Too Many Requests"))
+                .andExpect(jsonPath("$.path").value("/payment/methods"));
+
+        // Another client is not affected
+        mockMvc.perform(get("198.51.100.2", "/payment/methods")).andExpect(status().isOk());
+    }
+
+    @Test
+    void signedInUserHasABucketOfTheirOwn() throws Exception {
+        User customer = userRepository.save(new User("hanmuc", "hanmuc@test.vn", "x", "Khách hạn mức"));
+        String bearer = "Bearer " + jwtUtils.generateJwtToken(customer);
+
+        mockMvc.perform(get("198.51.100.3", "/payment/methods")).andExpect(status().isOk());
+        mockMvc.perform(get("198.51.100.3", "/payment/methods")).andExpect(status().isOk());
+        mockMvc.perform(get("198.51.100.3", "/payment/methods")).andExpect(status().isTooManyRequests());
+
+        mockMvc.perform(get("198.51.100.3", "/payment/methods").header("Authorization", bearer))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void vnpayIpnIsNeverThrottled() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(get("198.51.100.4", "/payment/vnpay/ipn"))
+                    .andExpect(status().is(not(429)));
+        }
+    }
+
+    // The filter matches on the servlet path, which MockMvc leaves empty unless it is set
+    private static MockHttpServletRequestBuilder get(String ip, String path) {
+        return MockMvcRequestBuilders.get(path).servletPath(path).with(request -> {
+            request.setRemoteAddr(ip);
+            return request;
+        });
+    }
+}
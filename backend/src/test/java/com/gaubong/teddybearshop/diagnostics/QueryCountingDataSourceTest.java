@@ -0,0 +1,57 @@
+package com.gaubong.teddybearshop.diagnostics;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class QueryCountingDataSourceTest {
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:query_counting;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(new QueryCountingDataSource(h2));
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS stock (id BIGINT PRIMARY KEY, quantity INT)");
+        jdbcTemplate.execute("DELETE FROM stock");
+    }
+
+    @AfterEach
+    void tearDown() {
+        QueryCounter.end();
+    }
+
+    @Test
+    void countsJdbcTemplateStatementsAndABatchAsOne() {
+        QueryCounter.Scope scope = QueryCounter.begin(10, false);
+
+        jdbcTemplate.batchUpdate("INSERT INTO stock (id, quantity) VALUES (?, ?)",
+                List.of(new Object[]{1L, 5}, new Object[]{2L, 5}, new Object[]{3L, 5}));
+        jdbcTemplate.update("UPDATE stock SET quantity = quantity - 1 WHERE id = ?", 1L);
+        Integer total = jdbcTemplate.queryForObject("SELECT SUM(quantity) FROM stock", Integer.class);
+
+        assertThat(total).isEqualTo(14);
+        assertThat(scope.statements).isEqualTo(3);
+    }
+
+    @Test
+    void statementOverBudgetFailsBeforeReachingTheDatabase() {
+        QueryCounter.begin(1, true);
+
+        jdbcTemplate.update("INSERT INTO stock (id, quantity) VALUES (?, ?)", 1L, 5);
+        assertThatThrownBy(() -> jdbcTemplate.update("INSERT INTO stock (id, quantity) VALUES (?, ?)", 2L, 5))
+                .isInstanceOf(QueryBudgetExceededException.class)
+                .hasMessage("Query budget exceeded: statement 2 of 1");
+        QueryCounter.end();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM stock", Integer.class)).isEqualTo(1);
+    }
+}
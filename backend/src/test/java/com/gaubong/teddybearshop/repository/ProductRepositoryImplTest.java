@@ -0,0 +1,51 @@
+package com.gaubong.teddybearshop.repository;
+
+import com.gaubong.teddybearshop.repository.ProductRepositoryCustom.StockUpdate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ProductRepositoryImplTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private ProductRepositoryImpl repository;
+
+    @Test
+    void successNoInfoIsReportedAsUnverifiedNotTaken() {
+        // Lines are sent in ascending id order: 1, 2, 3
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenReturn(new int[] {1, 0, Statement.SUCCESS_NO_INFO});
+
+        StockUpdate update = repository.decreaseStockIfAvailable(Map.of(3L, 1, 1L, 2, 2L, 5));
+
+        assertThat(update.getShortIds()).containsExactly(2L);
+        assertThat(update.getUnverifiedIds()).containsExactly(3L);
+    }
+
+    @Test
+    void executeFailedCountsAsShort() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenReturn(new int[] {Statement.EXECUTE_FAILED});
+
+        StockUpdate update = repository.decreaseStockIfAvailable(Map.of(1L, 1));
+
+        assertThat(update.getShortIds()).isEqualTo(List.of(1L));
+        assertThat(update.getUnverifiedIds()).isEmpty();
+    }
+}
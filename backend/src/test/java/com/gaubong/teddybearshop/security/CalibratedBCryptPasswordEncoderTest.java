@@ -0,0 +1,25 @@
+package com.gaubong.teddybearshop.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CalibratedBCryptPasswordEncoderTest {
+
+    private final CalibratedBCryptPasswordEncoder encoder = new CalibratedBCryptPasswordEncoder(6);
+
+    @Test
+    void onlyHashesBelowTheConfiguredCostAreUpgraded() {
+        assertThat(encoder.upgradeEncoding(BCrypt.hashpw("matkhau123", BCrypt.gensalt(5)))).isTrue();
+        assertThat(encoder.upgradeEncoding(BCrypt.hashpw("matkhau123", BCrypt.gensalt(6)))).isFalse();
+        // A stronger hash written by a node that calibrated higher is kept as is
+        assertThat(encoder.upgradeEncoding(BCrypt.hashpw("matkhau123", BCrypt.gensalt(7)))).isFalse();
+    }
+
+    @Test
+    void nonBCryptValuesAreNotUpgraded() {
+        assertThat(encoder.upgradeEncoding(null)).isFalse();
+        assertThat(encoder.upgradeEncoding("{noop}matkhau123")).isFalse();
+    }
+}
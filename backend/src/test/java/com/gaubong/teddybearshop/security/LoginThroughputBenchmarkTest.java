@@ -0,0 +1,95 @@
+package com.gaubong.teddybearshop.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Login throughput benchmark: full DaoAuthenticationProvider logins (user lookup +
+ * BCrypt check) submitted through LoginExecutor, reported as logins/s and logins/s
+ * per core in use (the pool has one thread per core by default). Runs briefly at a
+ * low cost in the normal build; measure production settings with e.g.
+ * mvn test -Dtest=LoginThroughputBenchmarkTest -Dbenchmark.login.cost=12 -Dbenchmark.login.seconds=20
+ */
+class LoginThroughputBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginThroughputBenchmarkTest.class);
+
+    private final int cost = Integer.getInteger("benchmark.login.cost", 6);
+    private final long seconds = Long.getLong("benchmark.login.seconds", 1L);
+    private final int threads = Integer.getInteger("benchmark.login.threads", Runtime.getRuntime().availableProcessors());
+
+    private LoginExecutor loginExecutor;
+    private DaoAuthenticationProvider provider;
+
+    @BeforeEach
+    void setUp() {
+        CalibratedBCryptPasswordEncoder encoder = new CalibratedBCryptPasswordEncoder(cost);
+        provider = new DaoAuthenticationProvider();
+        provider.setPasswordEncoder(encoder);
+        provider.setUserDetailsService(new InMemoryUserDetailsManager(User.withUsername("khachhang")
+                .password(encoder.encode("matkhau123"))
+                .roles("CUSTOMER")
+                .build()));
+
+        loginExecutor = new LoginExecutor();
+        ReflectionTestUtils.setField(loginExecutor, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(loginExecutor, "threads", threads);
+        ReflectionTestUtils.setField(loginExecutor, "queueCapacity", 2 * threads);
+        loginExecutor.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        loginExecutor.stop();
+    }
+
+    @Test
+    void reportsLoginsPerSecondPerCore() {
+        // Warm up the JIT and the BCrypt code path before measuring
+        runFor(Math.max(200, seconds * 200));
+
+        long start = System.nanoTime();
+        int logins = runFor(seconds * 1000);
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        double perSecond = logins / elapsedSeconds;
+        int busyCores = Math.min(threads, Runtime.getRuntime().availableProcessors());
+        logger.info("BCrypt cost {}: {} logins in {} s on {} threads = {} logins/s, {} logins/s per core",
+                cost, logins, String.format("%.2f", elapsedSeconds), threads,
+                String.format("%.1f", perSecond), String.format("%.1f", perSecond / busyCores));
+        assertThat(logins).isPositive();
+    }
+
+    // Keeps every pool thread busy (bounded in-flight, so the queue never rejects) for durationMillis
+    private int runFor(long durationMillis) {
+        long deadline = System.nanoTime() + durationMillis * 1_000_000;
+        Deque<CompletableFuture<Authentication>> inFlight = new ArrayDeque<>();
+        int completed = 0;
+        while (System.nanoTime() < deadline || !inFlight.isEmpty()) {
+            if (System.nanoTime() < deadline && inFlight.size() < 2 * threads) {
+                inFlight.add(loginExecutor.submit(() -> provider.authenticate(
+                        new UsernamePasswordAuthenticationToken("khachhang", "matkhau123"))));
+                continue;
+            }
+            assertThat(inFlight.poll().join().isAuthenticated()).isTrue();
+            completed++;
+        }
+        return completed;
+    }
+}
@@ -0,0 +1,110 @@
+package com.gaubong.teddybearshop.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Rate limiter overhead benchmark: nanoseconds RateLimitFilter adds to a limited
+ * request (route match, client key, bucket lookup and refill), single-threaded and
+ * with every core hitting the same family. Runs briefly in the normal build; measure
+ * longer with e.g. mvn test -Dtest=RateLimitFilterBenchmarkTest -Dbenchmark.rate-limit.iterations=20000000
+ */
+class RateLimitFilterBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitFilterBenchmarkTest.class);
+
+    private static final FilterChain NOOP_CHAIN = (request, response) -> { };
+
+    private final int iterations = Integer.getInteger("benchmark.rate-limit.iterations", 2_000_000);
+    private final int clients = Integer.getInteger("benchmark.rate-limit.clients", 1000);
+    private final int threads = Runtime.getRuntime().availableProcessors();
+
+    private RateLimitFilter filter;
+    private MockHttpServletRequest[] requests;
+
+    @BeforeEach
+    void setUp() {
+        filter = new RateLimitFilter();
+        ReflectionTestUtils.setField(filter, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        // Large enough that no request is rejected: the benchmark measures the accepted path
+        ReflectionTestUtils.setField(filter, "authCapacity", Integer.MAX_VALUE);
+        ReflectionTestUtils.setField(filter, "authRefillPerMinute", 1e12);
+        filter.init();
+
+        requests = new MockHttpServletRequest[clients];
+        for (int i = 0; i < clients; i++) {
+            requests[i] = new MockHttpServletRequest("POST", "/auth/signin");
+            requests[i].setServletPath("/auth/signin");
+            requests[i].setRemoteAddr("10.0." + (i / 256) + "." + (i % 256));
+        }
+    }
+
+    @Test
+    void reportsNanosecondsPerRequest() throws Exception {
+        // Warm up the JIT before measuring
+        run(0, iterations / 2);
+
+        long start = System.nanoTime();
+        run(0, iterations);
+        double singleThreaded = (System.nanoTime() - start) / (double) iterations;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        double contended;
+        try {
+            List<CompletableFuture<Void>> workers = new ArrayList<>();
+            start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                workers.add(CompletableFuture.runAsync(() -> run(offset, iterations), pool));
+            }
+            workers.forEach(CompletableFuture::join);
+            contended = (System.nanoTime() - start) / (double) iterations;
+        } finally {
+            pool.shutdownNow();
+        }
+
+        logger.info("RateLimitFilter over {} clients: {} ns per request on 1 thread, {} ns per request per thread on {} threads",
+                clients, String.format("%.0f", singleThreaded), String.format("%.0f", contended), threads);
+        assertThat(singleThreaded).isLessThan(1000);
+    }
+
+    // Each thread gets its own request objects; the buckets and the map are shared
+    private void run(int offset, int count) {
+        MockHttpServletRequest[] mine = offset == 0 ? requests : copies(offset);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try {
+            for (int i = 0; i < count; i++) {
+                filter.doFilter(mine[i % clients], response, NOOP_CHAIN);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        assertThat(response.getStatus()).isEqualTo(200);
+    }
+
+    private MockHttpServletRequest[] copies(int offset) {
+        MockHttpServletRequest[] copies = new MockHttpServletRequest[clients];
+        for (int i = 0; i < clients; i++) {
+            copies[i] = new MockHttpServletRequest("POST", "/auth/signin");
+            copies[i].setServletPath("/auth/signin");
+            copies[i].setRemoteAddr(requests[(i + offset) % clients].getRemoteAddr());
+        }
+        return copies;
+    }
+}
@@ -0,0 +1,192 @@
+package com.gaubong.teddybearshop.security;
+
+import com.gaubong.teddybearshop.entity.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitFilterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private SimpleMeterRegistry meterRegistry;
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new RateLimitFilter();
+        ReflectionTestUtils.setField(filter, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "idleEvictionSeconds", 600L);
+        ReflectionTestUtils.setField(filter, "authCapacity", 2);
+        ReflectionTestUtils.setField(filter, "authRefillPerMinute", 1.0);
+        ReflectionTestUtils.setField(filter, "chatbotCapacity", 2);
+        ReflectionTestUtils.setField(filter, "chatbotRefillPerMinute", 1.0);
+        ReflectionTestUtils.setField(filter, "ordersCapacity", 2);
+        ReflectionTestUtils.setField(filter, "ordersRefillPerMinute", 1.0);
+        ReflectionTestUtils.setField(filter, "paymentCapacity", 2);
+        ReflectionTestUtils.setField(filter, "paymentRefillPerMinute", 1.0);
+        filter.init();
+    }
+
+    @AfterEach
+    void clearAuthentication() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void bucketRefillsAtTheConfiguredRate() {
+        // 10 tokens per minute: one every 6 seconds
+        double tokensPerNano = 10 / 60_000_000_000.0;
+        RateLimitFilter.Bucket bucket = new RateLimitFilter.Bucket(2, 0);
+
+        assertThat(bucket.tryAcquire(0, 2, tokensPerNano)).isZero();
+        assertThat(bucket.tryAcquire(0, 2, tokensPerNano)).isZero();
+        assertThat(bucket.tryAcquire(0, 2, tokensPerNano)).isEqualTo(6);
+        assertThat(bucket.tryAcquire(3 * SECOND, 2, tokensPerNano)).isEqualTo(3);
+        assertThat(bucket.tryAcquire(6 * SECOND, 2, tokensPerNano)).isZero();
+        assertThat(bucket.tryAcquire(6 * SECOND, 2, tokensPerNano)).isEqualTo(6);
+    }
+
+    @Test
+    void bucketNeverHoldsMoreThanItsCapacity() {
+        double tokensPerNano = 10 / 60_000_000_000.0;
+        RateLimitFilter.Bucket bucket = new RateLimitFilter.Bucket(2, 0);
+
+        // A long idle period refills to the capacity only
+        long later = 3600 * SECOND;
+        assertThat(bucket.tryAcquire(later, 2, tokensPerNano)).isZero();
+        assertThat(bucket.tryAcquire(later, 2, tokensPerNano)).isZero();
+        assertThat(bucket.tryAcquire(later, 2, tokensPerNano)).isPositive();
+    }
+
+    @Test
+    void retryAfterIsAtLeastOneSecondAndSixtyWithoutRefill() {
+        RateLimitFilter.Bucket fast = new RateLimitFilter.Bucket(1, 0);
+        assertThat(fast.tryAcquire(0, 1, 600 / 60_000_000_000.0)).isZero();
+        // 600 per minute refills a token in 0.1 s; rounded up to a whole second
+        assertThat(fast.tryAcquire(0, 1, 600 / 60_000_000_000.0)).isEqualTo(1);
+
+        RateLimitFilter.Bucket none = new RateLimitFilter.Bucket(1, 0);
+        assertThat(none.tryAcquire(0, 1, 0)).isZero();
+        assertThat(none.tryAcquire(SECOND, 1, 0)).isEqualTo(60);
+    }
+
+    @Test
+    void rejectionAnswers429WithRetryAfter() throws Exception {
+        assertThat(call(post("/auth/signin", "10.0.0.1")).getStatus()).isEqualTo(200);
+        assertThat(call(post("/auth/signin", "10.0.0.1")).getStatus()).isEqualTo(200);
+
+        MockHttpServletResponse rejected = call(post("/auth/signin", "10.0.0.1"));
+        assertThat(rejected.getStatus()).isEqualTo(429);
+        // One token per minute
+        assertThat(rejected.getHeader("Retry-After")).isIn("59", "60");
+        assertThat(rejected.getContentAsString()).contains("\"status\":429", "\"path\":\"/auth/signin\"");
+        assertThat(meterRegistry.counter("rate.limit.rejected", "family", "auth").count()).isEqualTo(1);
+    }
+
+    @Test
+    void anonymousRequestsAreLimitedPerIp() throws Exception {
+        call(post("/auth/signin", "10.0.0.1"));
+        call(post("/auth/signin", "10.0.0.1"));
+
+        assertThat(call(post("/auth/signin", "10.0.0.1")).getStatus()).isEqualTo(429);
+        assertThat(call(post("/auth/signin", "10.0.0.2")).getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void authenticatedRequestsAreLimitedPerUserAcrossIps() throws Exception {
+        signIn(7L);
+        call(post("/orders", "10.0.0.1"));
+        call(post("/orders", "10.0.0.2"));
+        assertThat(call(post("/orders", "10.0.0.3")).getStatus()).isEqualTo(429);
+
+        // Another user behind the same IP has a bucket of their own
+        signIn(8L);
+        assertThat(call(post("/orders", "10.0.0.1")).getStatus()).isEqualTo(200);
+
+        // And so do anonymous requests from that IP
+        SecurityContextHolder.clearContext();
+        assertThat(call(post("/orders", "10.0.0.1")).getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void vnpayIpnAndOtherRoutesAreNeverLimited() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertThat(call(get("/payment/vnpay/ipn", "203.0.113.5")).getStatus()).isEqualTo(200);
+            assertThat(call(get("/products", "203.0.113.5")).getStatus()).isEqualTo(200);
+            assertThat(call(get("/orders", "203.0.113.5")).getStatus()).isEqualTo(200);
+        }
+        call(get("/payment/vnpay/return", "203.0.113.5"));
+        call(get("/payment/vnpay/return", "203.0.113.5"));
+        assertThat(call(get("/payment/vnpay/return", "203.0.113.5")).getStatus()).isEqualTo(429);
+    }
+
+    @Test
+    void idleBucketsAreEvicted() throws Exception {
+        call(post("/auth/signin", "10.0.0.1"));
+        call(post("/chatbot/chat", "10.0.0.1"));
+        assertThat(buckets("auth")).isEqualTo(1);
+        assertThat(buckets("chatbot")).isEqualTo(1);
+
+        // Not idle long enough yet
+        filter.evictIdleBuckets();
+        assertThat(buckets("auth")).isEqualTo(1);
+
+        ReflectionTestUtils.setField(filter, "idleEvictionSeconds", 0L);
+        filter.evictIdleBuckets();
+        assertThat(buckets("auth")).isZero();
+        assertThat(buckets("chatbot")).isZero();
+    }
+
+    @Test
+    void disabledFilterLetsEverythingThrough() throws Exception {
+        ReflectionTestUtils.setField(filter, "enabled", false);
+        for (int i = 0; i < 5; i++) {
+            assertThat(call(post("/auth/signin", "10.0.0.1")).getStatus()).isEqualTo(200);
+        }
+        assertThat(buckets("auth")).isZero();
+    }
+
+    private MockHttpServletResponse call(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private static MockHttpServletRequest post(String path, String ip) {
+        return request("POST", path, ip);
+    }
+
+    private static MockHttpServletRequest get(String path, String ip) {
+        return request("GET", path, ip);
+    }
+
+    private static MockHttpServletRequest request(String method, String path, String ip) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setServletPath(path);
+        request.setRemoteAddr(ip);
+        return request;
+    }
+
+    private static void signIn(Long userId) {
+        User user = new User();
+        user.setId(userId);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+
+    private double buckets(String family) {
+        return meterRegistry.get("rate.limit.buckets").tag("family", family).gauge().value();
+    }
+}
@@ -0,0 +1,100 @@
+package com.gaubong.teddybearshop.service;
+
+import com.gaubong.teddybearshop.entity.Cart;
+import com.gaubong.teddybearshop.entity.Product;
+import com.gaubong.teddybearshop.entity.User;
+import com.gaubong.teddybearshop.repository.ProductRepository;
+import com.gaubong.teddybearshop.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The cart writes read products through ProductCache, and a product change only
+ * drops the cached entry once its transaction has committed.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class CartProductCacheTest {
+
+    private static final AtomicInteger customers = new AtomicInteger();
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cart cart;
+    private Product product;
+
+    @BeforeEach
+    void seed() {
+        int n = customers.incrementAndGet();
+        User customer = userRepository.save(new User("giohang" + n, "giohang" + n + "@test.vn", "x", "Khách " + n));
+        cart = cartService.getOrCreateCartForUser(customer);
+        product = productRepository.save(new Product("Gấu bông giỏ " + n, "Gấu bông mềm",
+                new BigDecimal("150000"), null, 50));
+    }
+
+    @Test
+    void addingAndUpdatingCartLinesFillTheCache() {
+        double hitsBefore = hits();
+
+        cartService.addToCart(cart, product.getId(), 1);
+        cartService.addToCart(cart, product.getId(), 1);
+        cartService.updateCartItemQuantity(cart, product.getId(), 3);
+
+        // The first lookup loads and keeps the product; the next two are served from the cache
+        assertThat(hits() - hitsBefore).isEqualTo(2);
+    }
+
+    @Test
+    void stockChangeInvalidatesOnlyAfterCommit() {
+        cartService.addToCart(cart, product.getId(), 1);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            productService.updateProductStock(product.getId(), 3);
+            // Not committed yet: other readers still get the cached, committed stock
+            assertThat(CompletableFuture.supplyAsync(() -> productCache.get(product.getId())).join()
+                    .orElseThrow().getStock()).isEqualTo(50);
+        });
+
+        double missesBefore = misses();
+        assertThat(productService.getProductById(product.getId()).orElseThrow().getStock()).isEqualTo(3);
+        assertThat(misses() - missesBefore).isEqualTo(1);
+    }
+
+    private double hits() {
+        return meterRegistry.counter("product.cache.requests", "result", "hit").count();
+    }
+
+    private double misses() {
+        return meterRegistry.counter("product.cache.requests", "result", "miss").count();
+    }
+}
@@ -0,0 +1,145 @@
+package com.gaubong.teddybearshop.service;
+
+import com.gaubong.teddybearshop.entity.ChatMessage;
+import com.gaubong.teddybearshop.entity.User;
+import com.gaubong.teddybearshop.repository.ChatMessageRepository;
+import com.gaubong.teddybearshop.repository.UserRepository;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Answers shared through the FAQ cache must never carry one user's conversation to another.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ChatFaqCacheIsolationTest {
+
+    private static final MockWebServer openAi = new MockWebServer();
+    private static final AtomicInteger replies = new AtomicInteger();
+
+    @Autowired
+    private ChatbotService chatbotService;
+
+    @Autowired
+    private ChatFaqCache faqCache;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @DynamicPropertySource
+    static void openAiStub(DynamicPropertyRegistry registry) throws IOException {
+        openAi.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest recorded) {
+                return completion("Trả lời số " + replies.incrementAndGet());
+            }
+        });
+        openAi.start();
+        registry.add("openai.base-url", () -> openAi.url("/").toString());
+    }
+
+    @AfterAll
+    static void stopStub() throws IOException {
+        openAi.shutdown();
+    }
+
+    @Test
+    void frequentQuestionIsAskedWithoutTheUsersHistory() throws Exception {
+        User alice = withHistory("khach_a");
+        User bob = userRepository.save(new User("khach_b", "khach_b@test.vn", "x", "Khách B"));
+        // Asked twice before (warm-min-count is 3), by customers with their own history
+        chatbotService.getChatResponse("Giá bao nhiêu ạ", withHistory("khach_e"));
+        chatbotService.getChatResponse("giá bao nhiêu ạ?", withHistory("khach_f"));
+        drainRecorded();
+        int before = openAi.getRequestCount();
+
+        String first = chatbotService.getChatResponse("Giá bao nhiêu ạ", alice);
+        String body = openAi.takeRequest(5, TimeUnit.SECONDS).getBody().readUtf8();
+        String second = chatbotService.getChatResponse("giá bao nhiêu ạ?", bob);
+
+        assertThat(body).doesNotContain("Teddy").doesNotContain("Lan");
+        assertThat(second).isEqualTo(first);
+        assertThat(openAi.getRequestCount()).isEqualTo(before + 1);
+    }
+
+    @Test
+    void rareQuestionKeepsTheUsersHistoryAndIsNotCached() throws Exception {
+        User gina = withHistory("khach_g");
+        User hoa = withHistory("khach_h");
+        drainRecorded();
+
+        String first = chatbotService.getChatResponse("Tôi tên gì", gina);
+        String body = openAi.takeRequest(5, TimeUnit.SECONDS).getBody().readUtf8();
+        String second = chatbotService.getChatResponse("tôi tên gì?", hoa);
+
+        assertThat(body).contains("Lan");
+        assertThat(openAi.takeRequest(5, TimeUnit.SECONDS)).isNotNull();
+        assertThat(second).isNotEqualTo(first);
+        assertThat(faqCache.get("toi ten gi")).isEmpty();
+    }
+
+    @Test
+    void followUpQuestionStillGetsTheUsersHistory() throws Exception {
+        User carol = withHistory("khach_c");
+        drainRecorded();
+
+        chatbotService.getChatResponse("Con gấu đó có màu khác không?", carol);
+
+        assertThat(openAi.takeRequest(5, TimeUnit.SECONDS).getBody().readUtf8()).contains("Teddy");
+    }
+
+    @Test
+    void warmUpOnlyReusesShareableAnswers() {
+        User dave = userRepository.save(new User("khach_d", "khach_d@test.vn", "x", "Khách D"));
+        for (int i = 0; i < 3; i++) {
+            // Answered with dave's history in the prompt
+            chatMessageRepository.save(new ChatMessage(dave, "Shop có gói quà không", "Có ạ, gói luôn con Teddy hồng của chị nhé"));
+            ChatMessage shared = new ChatMessage(dave, "Shop có xuất hóa đơn không", "Shop có xuất hóa đơn điện tử ạ");
+            shared.setShareable(true);
+            chatMessageRepository.save(shared);
+        }
+
+        faqCache.warmUp();
+
+        assertThat(faqCache.get(faqCache.keyFor("Shop có gói quà không"))).isEmpty();
+        assertThat(faqCache.get(faqCache.keyFor("Shop có xuất hóa đơn không"))).contains("Shop có xuất hóa đơn điện tử ạ");
+    }
+
+    private User withHistory(String username) {
+        User user = userRepository.save(new User(username, username + "@test.vn", "x", "Khách"));
+        chatMessageRepository.save(new ChatMessage(user,
+                "Tôi đang tìm gấu Teddy hồng cho bạn gái tên Lan", "Dạ, shop có gấu Teddy hồng 1m2 giá 450.000đ ạ"));
+        return user;
+    }
+
+    private static void drainRecorded() throws InterruptedException {
+        while (openAi.takeRequest(10, TimeUnit.MILLISECONDS) != null) {
+            // discard requests from earlier tests
+        }
+    }
+
+    private static MockResponse completion(String content) {
+        String body = "{\"id\":\"chatcmpl-test\",\"object\":\"chat.completion\",\"created\":1,\"model\":\"gpt-3.5-turbo\","
+                + "\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\"" + content + "\"},"
+                + "\"finish_reason\":\"stop\"}],\"usage\":{\"prompt_tokens\":1,\"completion_tokens\":1,\"total_tokens\":2}}";
+        return new MockResponse().setHeader("Content-Type", "application/json").setBody(body);
+    }
+}
@@ -0,0 +1,69 @@
+package com.gaubong.teddybearshop.service;
+
+import com.gaubong.teddybearshop.entity.ChatMessage;
+import com.gaubong.teddybearshop.entity.User;
+import com.gaubong.teddybearshop.repository.ChatMessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+
+@ExtendWith(MockitoExtension.class)
+class ChatMessageBufferTest {
+
+    @Mock
+    private ChatMessageRepository chatMessageRepository;
+
+    @InjectMocks
+    private ChatMessageBuffer buffer;
+
+    private final User user = new User("khachhang", "khachhang@test.vn", "x", "Khách");
+
+    // flush() reuses its batch list, so copy what each insert received
+    private final List<ChatMessage> inserted = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        user.setId(1L);
+        doAnswer(invocation -> inserted.addAll(invocation.getArgument(0)))
+                .when(chatMessageRepository).insertBatch(anyList());
+        ReflectionTestUtils.setField(buffer, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(buffer, "batchSize", 50);
+        // Long interval: only shutdown or add() may write
+        ReflectionTestUtils.setField(buffer, "flushIntervalMs", 60_000L);
+        ReflectionTestUtils.setField(buffer, "queueCapacity", 100);
+        ReflectionTestUtils.setField(buffer, "historyUsers", 100);
+        buffer.start();
+    }
+
+    @Test
+    void queuedMessagesAreWrittenOnStop() throws InterruptedException {
+        buffer.add(user, "Chào shop", "Chào bạn", false);
+
+        buffer.stop();
+
+        assertThat(inserted).extracting(ChatMessage::getUserMessage).containsExactly("Chào shop");
+        assertThat(buffer.queueDepth()).isZero();
+    }
+
+    @Test
+    void messagesAddedAfterStopAreWrittenThrough() throws InterruptedException {
+        buffer.stop();
+
+        buffer.add(user, "Shop còn mở không?", "Dạ còn ạ", true);
+
+        assertThat(inserted).extracting(ChatMessage::getUserMessage).containsExactly("Shop còn mở không?");
+        assertThat(buffer.queueDepth()).isZero();
+    }
+}
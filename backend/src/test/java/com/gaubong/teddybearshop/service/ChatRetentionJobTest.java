@@ -0,0 +1,62 @@
+package com.gaubong.teddybearshop.service;
+
+import com.gaubong.teddybearshop.entity.User;
+import com.gaubong.teddybearshop.repository.UserRepository;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The nightly purge also clears chat summaries that only cover purged turns,
+ * in the database and in ConversationMemory's cache.
+ */
+@SpringBootTest(properties = {
+        "chatbot.retention.max-age-days=180",
+        "chatbot.retention.chunk-size=1",
+        "chatbot.retention.pause-ms=0"})
+@ActiveProfiles("test")
+class ChatRetentionJobTest {
+
+    @Autowired
+    private ChatRetentionJob retentionJob;
+
+    @Autowired
+    private ConversationMemory conversationMemory;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void expiredSummariesAreClearedAndEvicted() {
+        User lan = withSummary("retention_lan", "Khách Lan tìm gấu Teddy hồng", LocalDateTime.now().minusDays(200));
+        User minh = withSummary("retention_minh", "Khách Minh hỏi về gấu trúc", LocalDateTime.now().minusDays(190));
+        User hoa = withSummary("retention_hoa", "Khách Hoa đặt gấu bông 1m2", LocalDateTime.now().minusDays(1));
+        // Cached before the purge
+        assertThat(contents(conversationMemory.history(lan))).anyMatch(text -> text.contains("Teddy hồng"));
+
+        retentionJob.purgeExpiredMessages();
+
+        assertThat(userRepository.findChatSummary(lan.getId()).get(0)).containsOnlyNulls();
+        assertThat(userRepository.findChatSummary(minh.getId()).get(0)).containsOnlyNulls();
+        assertThat(userRepository.findChatSummary(hoa.getId()).get(0)[0]).isEqualTo("Khách Hoa đặt gấu bông 1m2");
+        assertThat(conversationMemory.history(lan)).isEmpty();
+        assertThat(contents(conversationMemory.history(hoa))).anyMatch(text -> text.contains("gấu bông 1m2"));
+    }
+
+    private User withSummary(String username, String summary, LocalDateTime until) {
+        User user = userRepository.save(new User(username, username + "@test.vn", "x", "Khách"));
+        userRepository.updateChatSummary(user.getId(), summary, until);
+        return user;
+    }
+
+    private static List<String> contents(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getContent).toList();
+    }
+}
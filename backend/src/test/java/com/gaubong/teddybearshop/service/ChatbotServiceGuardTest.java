@@ -0,0 +1,123 @@
+package com.gaubong.teddybearshop.service;
+
+import com.gaubong.teddybearshop.resilience.CircuitBreaker;
+import com.gaubong.teddybearshop.resilience.OutboundGuard;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Chat calls through openAiGuard against a local OpenAI stub (openai.base-url) with
+ * injected latency and failures: the circuit opens, refuses calls with the busy
+ * reply, and closes after a successful half-open trial; a full bulkhead refuses too.
+ */
+@SpringBootTest(properties = {
+        "openai.timeout-seconds=1",
+        "resilience.openai.max-concurrent=1",
+        "resilience.openai.max-wait-ms=0",
+        "resilience.openai.window-size=4",
+        "resilience.openai.minimum-calls=2",
+        "resilience.openai.open-seconds=1",
+        "resilience.openai.half-open-calls=1"})
+@ActiveProfiles("test")
+class ChatbotServiceGuardTest {
+
+    private static final MockWebServer openAi = new MockWebServer();
+
+    private static final String BUSY_REPLY = (String) ReflectionTestUtils.getField(ChatbotService.class, "BUSY_REPLY");
+    private static final String ERROR_REPLY = (String) ReflectionTestUtils.getField(ChatbotService.class, "ERROR_REPLY");
+
+    // Every question is new, so no answer comes from the FAQ cache
+    private static final AtomicInteger questions = new AtomicInteger();
+
+    @Autowired
+    private ChatbotService chatbotService;
+
+    @Autowired
+    @Qualifier("openAiGuard")
+    private OutboundGuard openAiGuard;
+
+    @DynamicPropertySource
+    static void openAiStub(DynamicPropertyRegistry registry) throws IOException {
+        openAi.start();
+        registry.add("openai.base-url", () -> openAi.url("/").toString());
+    }
+
+    @AfterAll
+    static void stopStub() throws IOException {
+        openAi.shutdown();
+    }
+
+    @Test
+    void failuresOpenTheCircuitAndASuccessfulTrialClosesIt() throws Exception {
+        // A reply slower than openai.timeout-seconds, then a server error
+        openAi.enqueue(completion("Quá muộn").setHeadersDelay(2, TimeUnit.SECONDS));
+        openAi.enqueue(new MockResponse().setResponseCode(503));
+        assertThat(ask()).isEqualTo(ERROR_REPLY);
+        assertThat(ask()).isEqualTo(ERROR_REPLY);
+        assertThat(openAiGuard.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        // Open: the busy reply comes right away, the stub is not called
+        int requests = openAi.getRequestCount();
+        assertThat(ask()).isEqualTo(BUSY_REPLY);
+        assertThat(openAi.getRequestCount()).isEqualTo(requests);
+
+        // Half-open after open-seconds: the trial call succeeds and closes the circuit
+        Thread.sleep(1100);
+        openAi.enqueue(completion("Shop luôn sẵn sàng hỗ trợ bạn!"));
+        assertThat(ask()).isEqualTo("Shop luôn sẵn sàng hỗ trợ bạn!");
+        assertThat(openAiGuard.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void badRequestsDoNotOpenTheCircuit() {
+        for (int i = 0; i < 3; i++) {
+            openAi.enqueue(new MockResponse().setResponseCode(400)
+                    .setHeader("Content-Type", "application/json")
+                    .setBody("{\"error\":{\"message\":\"bad request\",\"type\":\"invalid_request_error\"}}"));
+            assertThat(ask()).isEqualTo(ERROR_REPLY);
+        }
+
+        assertThat(openAiGuard.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void fullBulkheadAnswersBusyRightAway() throws Exception {
+        openAi.enqueue(completion("Chào bạn!").setHeadersDelay(300, TimeUnit.MILLISECONDS));
+        int requests = openAi.getRequestCount();
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(this::ask);
+        while (openAi.getRequestCount() == requests) {
+            Thread.sleep(10);
+        }
+
+        assertThat(ask()).isEqualTo(BUSY_REPLY);
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("Chào bạn!");
+        assertThat(openAiGuard.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    private String ask() {
+        return chatbotService.getChatResponse("Câu hỏi số " + questions.incrementAndGet() + " cho shop", null);
+    }
+
+    private static MockResponse completion(String content) {
+        String body = "{\"id\":\"chatcmpl-test\",\"object\":\"chat.completion\",\"created\":1,\"model\":\"gpt-3.5-turbo\","
+                + "\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\"" + content + "\"},"
+                + "\"finish_reason\":\"stop\"}],\"usage\":{\"prompt_tokens\":1,\"completion_tokens\":1,\"total_tokens\":2}}";
+        return new MockResponse().setHeader("Content-Type", "application/json").setBody(body);
+    }
+}
@@ -0,0 +1,51 @@
+package com.gaubong.teddybearshop.service;
+
+import com.gaubong.teddybearshop.entity.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ChatbotServiceShutdownTest {
+
+    @Mock
+    private ChatIntentRouter intentRouter;
+
+    @Mock
+    private ChatMessageBuffer messageBuffer;
+
+    @InjectMocks
+    private ChatbotService chatbotService;
+
+    @Test
+    void stopWaitsForRunningChatCallsSoTheirExchangeIsQueued() throws Exception {
+        ReflectionTestUtils.setField(chatbotService, "chatThreads", 1);
+        ReflectionTestUtils.setField(chatbotService, "chatQueueCapacity", 10);
+        ReflectionTestUtils.setField(chatbotService, "shutdownTimeoutSeconds", 5L);
+        chatbotService.startExecutor();
+        User user = new User("khachhang", "khachhang@test.vn", "x", "Khách");
+        user.setId(1L);
+        when(intentRouter.answer(anyString(), any())).thenAnswer(invocation -> {
+            Thread.sleep(300);
+            return Optional.of("Phí giao hàng là 30.000đ");
+        });
+
+        CompletableFuture<String> reply = chatbotService.getChatResponseAsync("Phí ship bao nhiêu?", user);
+        chatbotService.stopExecutor();
+
+        assertThat(reply).isCompletedWithValue("Phí giao hàng là 30.000đ");
+        verify(messageBuffer).add(user, "Phí ship bao nhiêu?", "Phí giao hàng là 30.000đ", false);
+    }
+}
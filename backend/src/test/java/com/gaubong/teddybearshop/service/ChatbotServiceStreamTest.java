@@ -0,0 +1,199 @@
+package com.gaubong.teddybearshop.service;
+
+import com.gaubong.teddybearshop.entity.ChatMessage;
+import com.gaubong.teddybearshop.entity.User;
+import com.gaubong.teddybearshop.repository.UserRepository;
+import com.gaubong.teddybearshop.resilience.DependencyUnavailableException;
+import com.gaubong.teddybearshop.resilience.OutboundGuard;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * POST /chatbot/chat/stream's service side against a local OpenAI stub that sends
+ * its SSE body slowly: tokens reach the client while the model is still writing,
+ * the assembled answer is saved, and a client that goes away frees the guard's slot.
+ */
+@SpringBootTest(properties = {
+        "resilience.openai.max-concurrent=1",
+        "resilience.openai.max-wait-ms=0"})
+@ActiveProfiles("test")
+class ChatbotServiceStreamTest {
+
+    private static final MockWebServer openAi = new MockWebServer();
+
+    private static final List<String> TOKENS = List.of("Chào ", "bạn, ", "shop ", "giúp ", "gì ", "được ", "ạ?");
+
+    // Every question is new, so no answer comes from the FAQ cache
+    private static final AtomicInteger questions = new AtomicInteger();
+
+    @Autowired
+    private ChatbotService chatbotService;
+
+    @Autowired
+    @Qualifier("openAiGuard")
+    private OutboundGuard openAiGuard;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @DynamicPropertySource
+    static void openAiStub(DynamicPropertyRegistry registry) throws IOException {
+        openAi.start();
+        registry.add("openai.base-url", () -> openAi.url("/").toString());
+    }
+
+    @AfterAll
+    static void stopStub() throws IOException {
+        openAi.shutdown();
+    }
+
+    @Test
+    void tokensArriveWhileTheModelIsStillWritingAndTheAnswerIsSaved() throws Exception {
+        User customer = customer();
+        openAi.enqueue(slowStream());
+        RecordingEmitter emitter = new RecordingEmitter(-1);
+
+        chatbotService.streamChatResponse(question(), customer, emitter);
+
+        assertThat(emitter.firstToken.await(5, TimeUnit.SECONDS)).isTrue();
+        // The rest of the body is still on its way from the stub
+        assertThat(emitter.completed.getCount()).isEqualTo(1);
+        assertThat(emitter.completed.await(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(emitter.events).hasSize(TOKENS.size() + 1);
+        assertThat(emitter.events.get(0)).contains("event:token").contains("Chào ");
+        assertThat(emitter.events.get(TOKENS.size())).contains("event:done");
+        List<ChatMessage> saved = chatbotService.getChatHistory(customer, PageRequest.of(0, 10)).getContent();
+        assertThat(saved).extracting(ChatMessage::getBotResponse).containsExactly(String.join("", TOKENS));
+        assertThat(activeStreams()).isEmpty();
+        assertSlotIsFree();
+    }
+
+    @Test
+    void clientDisconnectStopsTheStreamAndFreesTheSlot() throws Exception {
+        User customer = customer();
+        openAi.enqueue(slowStream());
+        // The client goes away after the second token
+        RecordingEmitter emitter = new RecordingEmitter(2);
+
+        chatbotService.streamChatResponse(question(), customer, emitter);
+
+        assertThat(emitter.firstToken.await(5, TimeUnit.SECONDS)).isTrue();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!activeStreams().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(activeStreams()).isEmpty();
+        assertSlotIsFree();
+
+        // Nothing more is sent and the partial answer is not saved
+        Thread.sleep(1500);
+        assertThat(emitter.events).hasSize(2);
+        assertThat(emitter.completed.getCount()).isEqualTo(1);
+        assertThat(chatbotService.getChatHistory(customer, PageRequest.of(0, 10)).getContent()).isEmpty();
+    }
+
+    private void assertSlotIsFree() {
+        // max-concurrent=1 and no wait: acquire only succeeds once the stream's permit is back
+        OutboundGuard.Permit permit = null;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (permit == null) {
+            try {
+                permit = openAiGuard.acquire();
+            } catch (DependencyUnavailableException e) {
+                assertThat(System.currentTimeMillis()).isLessThan(deadline);
+                Thread.yield();
+            }
+        }
+        permit.cancel();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<Object> activeStreams() {
+        return (Set<Object>) ReflectionTestUtils.getField((Object) AopTestUtils.getTargetObject(chatbotService), "activeStreams");
+    }
+
+    private User customer() {
+        int n = questions.incrementAndGet();
+        return userRepository.save(new User("stream" + n, "stream" + n + "@test.vn", "x", "Khách " + n));
+    }
+
+    private static String question() {
+        return "Kể cho mình nghe chuyện vui số " + questions.incrementAndGet() + " nhé";
+    }
+
+    // One chunk per token, then [DONE]; about 200 ms between chunks
+    private static MockResponse slowStream() {
+        StringBuilder body = new StringBuilder();
+        for (String token : TOKENS) {
+            body.append("data: {\"id\":\"chatcmpl-test\",\"object\":\"chat.completion.chunk\",\"created\":1,")
+                    .append("\"model\":\"gpt-3.5-turbo\",\"choices\":[{\"index\":0,\"delta\":{\"content\":\"")
+                    .append(token).append("\"},\"finish_reason\":null}]}\n\n");
+        }
+        body.append("data: [DONE]\n\n");
+        return new MockResponse()
+                .setHeader("Content-Type", "text/event-stream")
+                .setBody(body.toString())
+                .throttleBody(180, 200, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Records what would be written to the client. With failAfterTokens >= 0 the
+     * write after that many tokens fails the way a closed connection does.
+     */
+    private static final class RecordingEmitter extends SseEmitter {
+        final List<String> events = new CopyOnWriteArrayList<>();
+        final CountDownLatch firstToken = new CountDownLatch(1);
+        final CountDownLatch completed = new CountDownLatch(1);
+        private final int failAfterTokens;
+
+        RecordingEmitter(int failAfterTokens) {
+            this.failAfterTokens = failAfterTokens;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            StringBuilder event = new StringBuilder();
+            builder.build().forEach(part -> event.append(part.getData()));
+            if (event.indexOf("event:token") >= 0 && events.size() == failAfterTokens) {
+                throw new IOException("Broken pipe");
+            }
+            events.add(event.toString());
+            if (event.indexOf("event:token") >= 0) {
+                firstToken.countDown();
+            }
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+
+        @Override
+        public void completeWithError(Throwable ex) {
+            completed.countDown();
+        }
+    }
+}
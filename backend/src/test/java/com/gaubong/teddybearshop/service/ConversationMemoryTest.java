@@ -0,0 +1,134 @@
+package com.gaubong.teddybearshop.service;
+
+import com.gaubong.teddybearshop.entity.User;
+import com.gaubong.teddybearshop.repository.ChatMessageRepository;
+import com.gaubong.teddybearshop.repository.UserRepository;
+import com.gaubong.teddybearshop.resilience.OutboundGuard;
+import com.theokanning.openai.completion.chat.ChatCompletionChoice;
+import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+import com.theokanning.openai.completion.chat.ChatCompletionResult;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import com.theokanning.openai.service.OpenAiService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ConversationMemoryTest {
+
+    @Mock
+    private ChatMessageRepository chatMessageRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private OpenAiService openAiService;
+
+    @Mock
+    private OutboundGuard openAiGuard;
+
+    private final ChatMessageBuffer buffer = new ChatMessageBuffer();
+    private final ConversationMemory memory = new ConversationMemory();
+    private final User user = new User("khachhang", "khachhang@test.vn", "x", "Khách");
+
+    @BeforeEach
+    void setUp() throws Exception {
+        user.setId(1L);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        ReflectionTestUtils.setField(buffer, "chatMessageRepository", chatMessageRepository);
+        ReflectionTestUtils.setField(buffer, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(buffer, "batchSize", 50);
+        ReflectionTestUtils.setField(buffer, "flushIntervalMs", 60_000L);
+        ReflectionTestUtils.setField(buffer, "queueCapacity", 100);
+        ReflectionTestUtils.setField(buffer, "historyUsers", 100);
+        buffer.start();
+
+        ReflectionTestUtils.setField(memory, "messageBuffer", buffer);
+        ReflectionTestUtils.setField(memory, "userRepository", userRepository);
+        ReflectionTestUtils.setField(memory, "openAiService", openAiService);
+        ReflectionTestUtils.setField(memory, "openAiGuard", openAiGuard);
+        ReflectionTestUtils.setField(memory, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(memory, "apiKey", "test-key");
+        ReflectionTestUtils.setField(memory, "model", "gpt-3.5-turbo");
+        ReflectionTestUtils.setField(memory, "maxTokens", 1200);
+        ReflectionTestUtils.setField(memory, "summaryMaxTokens", 250);
+        ReflectionTestUtils.setField(memory, "cacheUsers", 100);
+        memory.start();
+
+        when(openAiGuard.call(any())).thenAnswer(invocation -> ((Callable<?>) invocation.getArgument(0)).call());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        memory.stop();
+        buffer.stop();
+    }
+
+    @Test
+    void shortTurnsPushedOutOfTheRingAreSummarized() throws Exception {
+        when(openAiService.createChatCompletion(any())).thenReturn(completion("Khách tìm gấu Teddy hồng cho bạn gái tên Lan"));
+        // Loads the (empty) stored history, so the buffer keeps this user's ring from now on
+        assertThat(memory.history(user)).isEmpty();
+
+        int turns = ChatMessageBuffer.RECENT_EXCHANGES + 2;
+        for (int i = 1; i <= turns; i++) {
+            buffer.add(user, "Câu hỏi " + i, "Trả lời " + i, false);
+            // Distinct createdAt per turn
+            Thread.sleep(2);
+        }
+        LocalDateTime secondTurn = buffer.dropped(user).get(1).getCreatedAt();
+
+        // All ten remaining turns fit the budget, yet the two that left the ring get summarized
+        List<ChatMessage> history = memory.history(user);
+        assertThat(history).hasSize(2 * ChatMessageBuffer.RECENT_EXCHANGES);
+        assertThat(history.get(0).getContent()).isEqualTo("Câu hỏi 3");
+
+        verify(userRepository, timeout(5000)).updateChatSummary(eq(1L),
+                eq("Khách tìm gấu Teddy hồng cho bạn gái tên Lan"), eq(secondTurn));
+        ArgumentCaptor<ChatCompletionRequest> request = ArgumentCaptor.forClass(ChatCompletionRequest.class);
+        verify(openAiService).createChatCompletion(request.capture());
+        String transcript = request.getValue().getMessages().get(1).getContent();
+        assertThat(transcript).contains("Câu hỏi 1", "Trả lời 2").doesNotContain("Câu hỏi 3");
+
+        // The summary now covers them: they are released and the next prompt starts with it
+        awaitNoDroppedTurns();
+        history = memory.history(user);
+        assertThat(history.get(0).getContent()).endsWith("Khách tìm gấu Teddy hồng cho bạn gái tên Lan");
+        assertThat(history).hasSize(2 * ChatMessageBuffer.RECENT_EXCHANGES + 1);
+    }
+
+    private void awaitNoDroppedTurns() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!buffer.dropped(user).isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(buffer.dropped(user)).isEmpty();
+    }
+
+    private static ChatCompletionResult completion(String content) {
+        ChatCompletionChoice choice = new ChatCompletionChoice();
+        choice.setMessage(new ChatMessage("assistant", content));
+        ChatCompletionResult result = new ChatCompletionResult();
+        result.setChoices(List.of(choice));
+        return result;
+    }
+}
@@ -0,0 +1,176 @@
+package com.gaubong.teddybearshop.service;
+
+import com.gaubong.teddybearshop.config.ResilienceConfig;
+import com.gaubong.teddybearshop.resilience.CircuitBreaker;
+import com.gaubong.teddybearshop.resilience.DependencyUnavailableException;
+import com.gaubong.teddybearshop.resilience.OutboundGuard;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Google sign-in against a local certificate stub (google.oauth.certs-url) with
+ * injected latency and failures, through the googleGuard built by ResilienceConfig.
+ * Test tokens carry a valid payload but no real signature, so a successful
+ * certificate fetch ends in "Invalid Google ID token", which is not a failure of Google.
+ */
+class GoogleOAuthServiceGuardTest {
+
+    private static final String CLIENT_ID = "test-client-id.apps.googleusercontent.com";
+
+    private MockWebServer certs;
+    private SimpleMeterRegistry meterRegistry;
+    private OutboundGuard googleGuard;
+    private GoogleOAuthService googleOAuthService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        certs = new MockWebServer();
+        certs.start();
+
+        meterRegistry = new SimpleMeterRegistry();
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("resilience.google.max-concurrent", "1")
+                .withProperty("resilience.google.max-wait-ms", "0")
+                .withProperty("resilience.google.window-size", "4")
+                .withProperty("resilience.google.minimum-calls", "2")
+                .withProperty("resilience.google.failure-rate-threshold", "0.5")
+                .withProperty("resilience.google.open-seconds", "1")
+                .withProperty("resilience.google.half-open-calls", "1")
+                .withProperty("resilience.google.slow-call-ms", "200");
+        ResilienceConfig resilienceConfig = new ResilienceConfig();
+        ReflectionTestUtils.setField(resilienceConfig, "environment", environment);
+        ReflectionTestUtils.setField(resilienceConfig, "meterRegistry", meterRegistry);
+        googleGuard = resilienceConfig.googleGuard();
+
+        googleOAuthService = new GoogleOAuthService();
+        ReflectionTestUtils.setField(googleOAuthService, "googleClientId", CLIENT_ID);
+        ReflectionTestUtils.setField(googleOAuthService, "certsUrl", certs.url("/oauth2/v1/certs").toString());
+        ReflectionTestUtils.setField(googleOAuthService, "connectTimeoutMs", 1000);
+        ReflectionTestUtils.setField(googleOAuthService, "readTimeoutMs", 300);
+        ReflectionTestUtils.setField(googleOAuthService, "googleGuard", googleGuard);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        certs.shutdown();
+    }
+
+    @Test
+    void junkTokensAreRejectedWithoutTouchingTheCircuit() {
+        for (String junk : new String[] {"not-a-token", "a.b.c", "eyJhbGciOiJSUzI1NiJ9.e30", "..."}) {
+            for (int i = 0; i < 3; i++) {
+                assertThatThrownBy(() -> googleOAuthService.authenticateGoogleUser(junk))
+                        .isInstanceOf(IllegalArgumentException.class)
+                        .hasMessage("Invalid Google ID token");
+            }
+        }
+
+        assertThat(googleGuard.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(certs.getRequestCount()).isZero();
+    }
+
+    @Test
+    void transportFailuresOpenTheCircuitAndASuccessfulTrialClosesIt() throws Exception {
+        // A stalled response past the read timeout, then a server error
+        certs.enqueue(new MockResponse().setHeadersDelay(1, TimeUnit.SECONDS).setBody("{}"));
+        certs.enqueue(new MockResponse().setResponseCode(503));
+
+        assertThatThrownBy(() -> googleOAuthService.authenticateGoogleUser(token()))
+                .isInstanceOf(SocketTimeoutException.class);
+        assertThatThrownBy(() -> googleOAuthService.authenticateGoogleUser(token()))
+                .isInstanceOf(IOException.class);
+        assertThat(googleGuard.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        // Open: refused without reaching the stub
+        int requests = certs.getRequestCount();
+        assertThatThrownBy(() -> googleOAuthService.authenticateGoogleUser(token()))
+                .isInstanceOf(DependencyUnavailableException.class);
+        assertThat(certs.getRequestCount()).isEqualTo(requests);
+
+        // Half-open after open-seconds: one trial call reaches the stub and closes the circuit
+        Thread.sleep(1100);
+        certs.enqueue(certificates());
+        assertThatThrownBy(() -> googleOAuthService.authenticateGoogleUser(token()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Invalid Google ID token");
+        assertThat(googleGuard.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(certs.getRequestCount()).isEqualTo(requests + 1);
+    }
+
+    @Test
+    void failedTrialReopensTheCircuit() throws Exception {
+        certs.enqueue(new MockResponse().setResponseCode(500));
+        certs.enqueue(new MockResponse().setResponseCode(500));
+        assertThatThrownBy(() -> googleOAuthService.authenticateGoogleUser(token())).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> googleOAuthService.authenticateGoogleUser(token())).isInstanceOf(IOException.class);
+        assertThat(googleGuard.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        Thread.sleep(1100);
+        certs.enqueue(new MockResponse().setHeadersDelay(1, TimeUnit.SECONDS).setBody("{}"));
+        assertThatThrownBy(() -> googleOAuthService.authenticateGoogleUser(token()))
+                .isInstanceOf(SocketTimeoutException.class);
+
+        assertThat(googleGuard.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThatThrownBy(() -> googleOAuthService.authenticateGoogleUser(token()))
+                .isInstanceOf(DependencyUnavailableException.class);
+    }
+
+    @Test
+    void fullBulkheadRejectsAndSlowCallIsCounted() throws Exception {
+        // Slower than slow-call-ms, within the read timeout: holds the only slot meanwhile
+        certs.enqueue(certificates().setHeadersDelay(250, TimeUnit.MILLISECONDS));
+        CompletableFuture<Throwable> slow = CompletableFuture.supplyAsync(() -> {
+            try {
+                googleOAuthService.authenticateGoogleUser(token());
+                return null;
+            } catch (Exception e) {
+                return e;
+            }
+        });
+        assertThat(certs.takeRequest(5, TimeUnit.SECONDS)).isNotNull();
+
+        assertThatThrownBy(() -> googleOAuthService.authenticateGoogleUser(token()))
+                .isInstanceOf(DependencyUnavailableException.class)
+                .hasMessageContaining("too many concurrent calls");
+
+        assertThat(slow.get(5, TimeUnit.SECONDS)).hasMessage("Invalid Google ID token");
+        assertThat(meterRegistry.counter("resilience.calls", "dependency", "google", "outcome", "rejected").count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.counter("resilience.calls", "dependency", "google", "outcome", "slow").count())
+                .isEqualTo(1);
+    }
+
+    private static MockResponse certificates() {
+        return new MockResponse().setHeader("Content-Type", "application/json").setBody("{}");
+    }
+
+    // Well-formed ID token for CLIENT_ID with a payload that passes the issuer, audience and expiry checks
+    private static String token() {
+        long now = System.currentTimeMillis() / 1000;
+        String header = "{\"alg\":\"RS256\",\"typ\":\"JWT\",\"kid\":\"test\"}";
+        String payload = "{\"iss\":\"https://accounts.google.com\",\"aud\":\"" + CLIENT_ID + "\","
+                + "\"sub\":\"1234567890\",\"email\":\"khachhang@gmail.com\",\"name\":\"Khách\","
+                + "\"iat\":" + now + ",\"exp\":" + (now + 3600) + "}";
+        return encode(header) + "." + encode(payload) + "." + encode("signature");
+    }
+
+    private static String encode(String json) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
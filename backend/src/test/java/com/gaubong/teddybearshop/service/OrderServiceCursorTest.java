@@ -0,0 +1,34 @@
+package com.gaubong.teddybearshop.service;
+
+import com.gaubong.teddybearshop.repository.OrderRepository;
+import com.gaubong.teddybearshop.util.KeysetCursor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class OrderServiceCursorTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @InjectMocks
+    private OrderService orderService;
+
+    @Test
+    void cursorWithoutCreatedAtIsRejectedInsteadOfEndingThePages() {
+        String forged = KeysetCursor.encode("createdAt,desc", null, 42L);
+
+        assertThatThrownBy(() -> orderService.getOrdersByUserAfter(1L, forged, 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Invalid cursor: missing sort value");
+        assertThatThrownBy(() -> orderService.getOrdersWithFiltersAfter(null, null, null, forged, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(orderRepository);
+    }
+}
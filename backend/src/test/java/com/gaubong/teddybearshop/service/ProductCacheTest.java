@@ -0,0 +1,120 @@
+package com.gaubong.teddybearshop.service;
+
+import com.gaubong.teddybearshop.entity.Product;
+import com.gaubong.teddybearshop.repository.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ProductCacheTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @InjectMocks
+    private ProductCache productCache;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(productCache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(productCache, "maxSize", 100);
+        productCache.registerMetrics();
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        when(productRepository.findById(1L)).thenAnswer(invocation -> {
+            loadStarted.countDown();
+            releaseLoad.await(5, TimeUnit.SECONDS);
+            return Optional.of(product(1L, 10));
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Product> results = new ArrayList<>();
+        try {
+            List<CompletableFuture<Optional<Product>>> readers = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                readers.add(CompletableFuture.supplyAsync(() -> productCache.get(1L), pool));
+            }
+            assertThat(loadStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            Thread.sleep(100);
+            releaseLoad.countDown();
+
+            for (CompletableFuture<Optional<Product>> reader : readers) {
+                results.add(reader.get(5, TimeUnit.SECONDS).orElseThrow());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        verify(productRepository, times(1)).findById(1L);
+        assertThat(results).extracting(Product::getStock).containsOnly(10);
+        // Every caller gets its own copy
+        assertThat(results.stream().distinct()).hasSize(results.size());
+        assertThat(productCache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void committedChangeDropsTheEntry() {
+        when(productRepository.findById(1L))
+                .thenReturn(Optional.of(product(1L, 10)))
+                .thenReturn(Optional.of(product(1L, 7)));
+        assertThat(productCache.get(1L).orElseThrow().getStock()).isEqualTo(10);
+        assertThat(productCache.get(1L).orElseThrow().getStock()).isEqualTo(10);
+
+        productCache.onProductChanged(ProductChangedEvent.of(1L));
+
+        assertThat(productCache.get(1L).orElseThrow().getStock()).isEqualTo(7);
+        verify(productRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    void valueLoadedWhileAChangeCommitsIsNotKept() throws Exception {
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        when(productRepository.findById(1L))
+                .thenAnswer(invocation -> {
+                    loadStarted.countDown();
+                    releaseLoad.await(5, TimeUnit.SECONDS);
+                    return Optional.of(product(1L, 10));
+                })
+                .thenReturn(Optional.of(product(1L, 7)));
+
+        CompletableFuture<Optional<Product>> reader = CompletableFuture.supplyAsync(() -> productCache.get(1L));
+        assertThat(loadStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        productCache.onProductChanged(ProductChangedEvent.of(1L));
+        releaseLoad.countDown();
+
+        assertThat(reader.get(5, TimeUnit.SECONDS).orElseThrow().getStock()).isEqualTo(10);
+        assertThat(productCache.size()).isZero();
+        assertThat(productCache.get(1L).orElseThrow().getStock()).isEqualTo(7);
+    }
+
+    private static Product product(Long id, int stock) {
+        Product product = new Product("Gấu bông " + id, null, new BigDecimal("150000"), null, stock);
+        product.setId(id);
+        return product;
+    }
+}
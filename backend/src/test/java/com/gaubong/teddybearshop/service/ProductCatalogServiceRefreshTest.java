@@ -0,0 +1,148 @@
+package com.gaubong.teddybearshop.service;
+
+import com.gaubong.teddybearshop.entity.Product;
+import com.gaubong.teddybearshop.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ProductCatalogServiceRefreshTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Spy
+    private ProductSearchIndex productSearchIndex = new ProductSearchIndex();
+
+    @InjectMocks
+    private ProductCatalogService catalogService;
+
+    // Stock per product id as committed in the "database"
+    private final int[] stock = {0, 10, 10, 10};
+    private final List<Set<Long>> loads = new CopyOnWriteArrayList<>();
+    private final List<String> loadThreads = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(catalogService, "refreshRetryMillis", 50L);
+        catalogService.startRefresher();
+        when(productRepository.findAll()).thenAnswer(invocation -> products(List.of(1L, 2L, 3L)));
+        catalogService.reload();
+    }
+
+    @AfterEach
+    void tearDown() {
+        catalogService.stopRefresher();
+    }
+
+    @Test
+    void stockChangeIsAppliedOffTheCommittingThread() throws Exception {
+        when(productRepository.findAllById(any())).thenAnswer(invocation -> load(invocation.getArgument(0)));
+
+        stock[2] = 0;
+        catalogService.onProductChanged(ProductChangedEvent.of(2L));
+
+        awaitStock(2L, 0);
+        assertThat(inStockIds()).containsExactly(1L, 3L);
+        assertThat(loadThreads).containsOnly("catalog-refresh");
+    }
+
+    @Test
+    void changesQueuedDuringARefreshAreMergedIntoTheNextOne() throws Exception {
+        CountDownLatch firstLoadStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstLoad = new CountDownLatch(1);
+        when(productRepository.findAllById(any())).thenAnswer(invocation -> {
+            if (loads.isEmpty()) {
+                firstLoadStarted.countDown();
+                releaseFirstLoad.await(5, TimeUnit.SECONDS);
+            }
+            return load(invocation.getArgument(0));
+        });
+
+        stock[1] = 9;
+        catalogService.onProductChanged(ProductChangedEvent.of(1L));
+        assertThat(firstLoadStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        stock[2] = 8;
+        catalogService.onProductChanged(ProductChangedEvent.of(2L));
+        stock[3] = 7;
+        catalogService.onProductChanged(ProductChangedEvent.of(3L));
+        releaseFirstLoad.countDown();
+
+        awaitStock(3L, 7);
+        assertThat(stockOf(1L)).isEqualTo(9);
+        assertThat(stockOf(2L)).isEqualTo(8);
+        assertThat(loads).containsExactly(Set.of(1L), Set.of(2L, 3L));
+    }
+
+    @Test
+    void failedRefreshIsRetried() throws Exception {
+        when(productRepository.findAllById(any()))
+                .thenThrow(new IllegalStateException("Connection is not available"))
+                .thenAnswer(invocation -> load(invocation.getArgument(0)));
+
+        stock[1] = 0;
+        catalogService.onProductChanged(ProductChangedEvent.of(1L));
+
+        awaitStock(1L, 0);
+    }
+
+    private List<Product> load(Collection<Long> ids) {
+        loads.add(Set.copyOf(ids));
+        loadThreads.add(Thread.currentThread().getName());
+        return products(ids);
+    }
+
+    private List<Product> products(Collection<Long> ids) {
+        List<Product> products = new ArrayList<>();
+        for (Long id : ids) {
+            Product product = new Product("Gấu bông " + id, null, new BigDecimal("150000"), null, stock[id.intValue()]);
+            product.setId(id);
+            products.add(product);
+        }
+        return products;
+    }
+
+    private void awaitStock(Long id, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (stockOf(id) != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(stockOf(id)).isEqualTo(expected);
+    }
+
+    private int stockOf(Long id) {
+        return page(null).getContent().stream()
+                .filter(product -> product.getId().equals(id))
+                .findFirst().orElseThrow().getStock();
+    }
+
+    private List<Long> inStockIds() {
+        return page(true).getContent().stream().map(Product::getId).toList();
+    }
+
+    private Page<Product> page(Boolean inStock) {
+        return catalogService.findProducts(null, null, null, null, inStock, PageRequest.of(0, 10)).orElseThrow();
+    }
+}
@@ -0,0 +1,105 @@
+package com.gaubong.teddybearshop.service;
+
+import com.gaubong.teddybearshop.dto.ProductFacets;
+import com.gaubong.teddybearshop.entity.Product;
+import com.gaubong.teddybearshop.util.KeysetCursor;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductCatalogSnapshotTest {
+
+    @Test
+    void pagesByCreatedAtThroughProductsWithoutCreatedAt() {
+        ProductCatalogSnapshot snapshot = ProductCatalogSnapshot.of(List.of(
+                product(1L, null),
+                product(2L, LocalDateTime.of(2024, 1, 2, 0, 0)),
+                product(3L, null),
+                product(4L, LocalDateTime.of(2024, 1, 1, 0, 0))));
+
+        for (boolean descending : new boolean[] {false, true}) {
+            String sortKey = "createdAt," + (descending ? "desc" : "asc");
+            List<Long> seen = new ArrayList<>();
+            KeysetCursor after = null;
+            do {
+                Slice<Product> slice = snapshot.queryAfter(null, null, null, null, null, "createdAt", descending, after, 1);
+                Product last = slice.getContent().get(0);
+                seen.add(last.getId());
+                after = slice.hasNext()
+                        ? KeysetCursor.decode(KeysetCursor.encode(sortKey, last.getCreatedAt(), last.getId()), sortKey)
+                        : null;
+            } while (after != null);
+
+            // Nulls sort first, ties broken by id
+            assertThat(seen).containsExactly(descending ? new Long[] {2L, 4L, 3L, 1L} : new Long[] {1L, 3L, 4L, 2L});
+        }
+    }
+
+    @Test
+    void stockAndPriceChangeIsReflectedLikeAFullRebuild() {
+        List<Product> before = new ArrayList<>();
+        for (long id = 1; id <= 6; id++) {
+            Product product = product(id, LocalDateTime.of(2024, 1, (int) id, 0, 0));
+            product.setPrice(BigDecimal.valueOf(50_000 * id));
+            product.setStock((int) id);
+            before.add(product);
+        }
+        ProductCatalogSnapshot snapshot = ProductCatalogSnapshot.of(before);
+
+        // A checkout sells out product 2; product 5 is repriced into the cheapest bucket
+        Product soldOut = ProductCatalogSnapshot.copyOf(before.get(1));
+        soldOut.setStock(0);
+        Product repriced = ProductCatalogSnapshot.copyOf(before.get(4));
+        repriced.setPrice(new BigDecimal("20000"));
+        ProductCatalogSnapshot patched = snapshot.withChanges(List.of(soldOut, repriced), Set.of());
+
+        List<Product> after = new ArrayList<>(before);
+        after.set(1, soldOut);
+        after.set(4, repriced);
+        ProductCatalogSnapshot rebuilt = ProductCatalogSnapshot.of(after);
+
+        for (String sort : new String[] {"stock", "price", "id", "createdAt"}) {
+            for (Sort.Direction direction : Sort.Direction.values()) {
+                PageRequest page = PageRequest.of(0, 10, Sort.by(direction, sort));
+                assertThat(ids(patched.query(null, null, null, null, null, page)))
+                        .as("%s %s", sort, direction)
+                        .isEqualTo(ids(rebuilt.query(null, null, null, null, null, page)));
+            }
+        }
+        PageRequest byId = PageRequest.of(0, 10);
+        assertThat(ids(patched.query(null, null, null, null, true, byId))).containsExactly(1L, 3L, 4L, 5L, 6L);
+        assertThat(ids(patched.query(null, null, null, new BigDecimal("100000"), null, byId))).containsExactly(1L, 2L, 5L);
+        assertThat(patched.query(null, null, null, null, null, byId).getContent().get(1).getStock()).isZero();
+        assertThat(priceBucketCounts(patched.facets(null, null, null, null, true)))
+                .isEqualTo(priceBucketCounts(rebuilt.facets(null, null, null, null, true)));
+
+        // The previous snapshot is untouched
+        assertThat(ids(snapshot.query(null, null, null, null, true, byId))).containsExactly(1L, 2L, 3L, 4L, 5L, 6L);
+        assertThat(ids(snapshot.query(null, null, null, new BigDecimal("100000"), null, byId))).containsExactly(1L, 2L);
+    }
+
+    private static List<Long> ids(Page<Product> page) {
+        return page.getContent().stream().map(Product::getId).toList();
+    }
+
+    private static List<Long> priceBucketCounts(ProductFacets facets) {
+        return facets.getPriceRanges().stream().map(ProductFacets.PriceRangeCount::getCount).toList();
+    }
+
+    private static Product product(Long id, LocalDateTime createdAt) {
+        Product product = new Product("Gấu " + id, null, new BigDecimal("100000"), null, 10);
+        product.setId(id);
+        product.setCreatedAt(createdAt);
+        return product;
+    }
+}
@@ -0,0 +1,63 @@
+package com.gaubong.teddybearshop.service;
+
+import com.gaubong.teddybearshop.entity.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductSearchIndexTest {
+
+    private final ProductSearchIndex index = new ProductSearchIndex();
+
+    @BeforeEach
+    void buildIndex() {
+        index.rebuild(List.of(
+                product(1L, "Gấu bông trắng"),
+                product(2L, "Gấu bông nâu"),
+                product(3L, "Thỏ bông trắng"),
+                product(4L, "Gấu Teddy trắng sữa")));
+    }
+
+    @Test
+    void everyTokenMustMatch() {
+        Page<Product> page = index.search("gấu trắng", PageRequest.of(0, 10)).orElseThrow();
+
+        assertThat(page.getContent()).extracting(Product::getId).containsExactlyInAnyOrder(1L, 4L);
+        assertThat(page.getTotalElements()).isEqualTo(2);
+    }
+
+    @Test
+    void lastTokenMatchesAsPrefix() {
+        Page<Product> page = index.search("gau tr", PageRequest.of(0, 10)).orElseThrow();
+
+        assertThat(page.getContent()).extracting(Product::getId).containsExactlyInAnyOrder(1L, 4L);
+    }
+
+    @Test
+    void unmatchedTokenReturnsNothing() {
+        Page<Product> page = index.search("gấu xanh", PageRequest.of(0, 10)).orElseThrow();
+
+        assertThat(page.getContent()).isEmpty();
+        assertThat(page.getTotalElements()).isZero();
+    }
+
+    @Test
+    void chatMatchStillRanksPartialMatches() {
+        List<Product> products = index.match("thỏ hay gấu nâu", 10, 0.1);
+
+        assertThat(products).extracting(Product::getId).contains(2L, 3L);
+    }
+
+    private static Product product(Long id, String name) {
+        Product product = new Product(name, null, new BigDecimal("100000"), null, 10);
+        product.setId(id);
+        product.setIsActive(true);
+        return product;
+    }
+}
@@ -0,0 +1,73 @@
+package com.gaubong.teddybearshop.service;
+
+import com.gaubong.teddybearshop.entity.Product;
+import com.gaubong.teddybearshop.repository.ProductRepository;
+import com.gaubong.teddybearshop.repository.ProductRepositoryCustom.StockUpdate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ProductServiceStockTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private ProductService productService;
+
+    @Test
+    void unverifiedLineIsAcceptedWhenLockedStockDroppedByTheQuantity() {
+        when(productRepository.findAllByIdForUpdate(anyCollection())).thenReturn(List.of(product(1L, 10)));
+        when(productRepository.decreaseStockIfAvailable(anyMap())).thenReturn(new StockUpdate(List.of(), List.of(1L)));
+        when(productRepository.findStockByIds(List.of(1L))).thenReturn(Map.of(1L, 7));
+
+        Map<Long, Product> locked = productService.reserveStock(Map.of(1L, 3));
+
+        assertThat(locked).containsKey(1L);
+    }
+
+    @Test
+    void unverifiedLineFailsWhenStockWasNotTaken() {
+        when(productRepository.findAllByIdForUpdate(anyCollection())).thenReturn(List.of(product(1L, 10)));
+        when(productRepository.decreaseStockIfAvailable(anyMap())).thenReturn(new StockUpdate(List.of(), List.of(1L)));
+        when(productRepository.findStockByIds(List.of(1L))).thenReturn(Map.of(1L, 10));
+
+        assertThatThrownBy(() -> productService.reserveStock(Map.of(1L, 3)))
+                .isInstanceOf(IllegalStateException.class);
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void unverifiedLineWithoutLockedStockFails() {
+        when(productRepository.decreaseStockIfAvailable(anyMap())).thenReturn(new StockUpdate(List.of(), List.of(1L)));
+
+        assertThatThrownBy(() -> productService.decreaseStock(Map.of(1L, 3)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static Product product(Long id, int stock) {
+        Product product = new Product("Gấu " + id, null, new BigDecimal("100000"), null, stock);
+        product.setId(id);
+        return product;
+    }
+}
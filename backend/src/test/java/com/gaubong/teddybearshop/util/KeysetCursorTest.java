@@ -0,0 +1,61 @@
+package com.gaubong.teddybearshop.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeysetCursorTest {
+
+    @Test
+    void roundTripsDateTimeAndDecimalKeys() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 5, 1, 10, 30, 15);
+
+        KeysetCursor byDate = KeysetCursor.decode(KeysetCursor.encode("createdAt,desc", createdAt, 42L), "createdAt,desc");
+        KeysetCursor byPrice = KeysetCursor.decode(KeysetCursor.encode("price,asc", new BigDecimal("1E+5"), 7L), "price,asc");
+
+        assertThat(byDate.getId()).isEqualTo(42L);
+        assertThat(byDate.getValueAsDateTime()).isEqualTo(createdAt);
+        assertThat(byPrice.getValueAsDecimal()).isEqualByComparingTo("100000");
+    }
+
+    @Test
+    void nullSortKeyDecodesAsNull() {
+        String token = KeysetCursor.encode("createdAt,asc", null, 5L);
+
+        KeysetCursor cursor = KeysetCursor.decode(token, "createdAt,asc");
+
+        assertThat(cursor.getId()).isEqualTo(5L);
+        assertThat(cursor.getValue()).isNull();
+        assertThat(cursor.getValueAsDateTime()).isNull();
+    }
+
+    @Test
+    void nullDecimalKeyIsRejectedAsInvalidCursor() {
+        KeysetCursor cursor = KeysetCursor.decode(KeysetCursor.encode("price,asc", null, 5L), "price,asc");
+
+        assertThatThrownBy(cursor::getValueAsDecimal)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Invalid cursor");
+    }
+
+    @Test
+    void missingKeyForANonNullColumnIsRejectedAsInvalidCursor() {
+        KeysetCursor cursor = KeysetCursor.decode(KeysetCursor.encode("createdAt,desc", null, 5L), "createdAt,desc");
+
+        assertThatThrownBy(cursor::getRequiredValueAsDateTime)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Invalid cursor: missing sort value");
+    }
+
+    @Test
+    void cursorForAnotherSortIsRejected() {
+        String token = KeysetCursor.encode("price,asc", BigDecimal.TEN, 1L);
+
+        assertThatThrownBy(() -> KeysetCursor.decode(token, "price,desc"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}